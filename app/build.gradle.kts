@@ -30,6 +30,19 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        unitTests.isIncludeAndroidResources = true
+        // Тяжёлые тесты и замеры (категория SlowTest) — только по -PslowTests
+        unitTests.all {
+            it.useJUnit {
+                if (project.hasProperty("slowTests")) {
+                    includeCategories("com.example.booklibrary.SlowTest")
+                } else {
+                    excludeCategories("com.example.booklibrary.SlowTest")
+                }
+            }
+        }
+    }
 }
 
 dependencies {
@@ -40,7 +53,14 @@ dependencies {
     implementation(libs.constraintlayout)
     implementation(libs.room.common.jvm)
     implementation(libs.room.runtime)
+    implementation(libs.room.paging)
+    implementation(libs.paging.runtime)
+    implementation(libs.lifecycle.process)
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.test.core)
+    // XmlPullParser для Fb2Parser в обычной JVM (в android.jar только заглушки)
+    testImplementation(libs.kxml2)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
     annotationProcessor(libs.room.compiler)
@@ -1,21 +1,38 @@
 package com.example.booklibrary;
 
 import android.content.Context;
+import android.database.Cursor;
+
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
-@Database(entities = {Book.class}, version = 6, exportSchema = false)
+@Database(entities = {Book.class, BookFts.class, BlockFts.class, LibraryStat.class,
+        ReadingProgress.class}, version = 19, exportSchema = false)
 @TypeConverters(Converters.class)
 public abstract class AppDatabase extends RoomDatabase {
     private static final String DATABASE_NAME = "booklibrary.db";
     private static volatile AppDatabase instance;
 
+    // Миграция выбросила много данных — после открытия один раз сжимаем файл базы
+    private static volatile boolean vacuumPending;
+
     public abstract BookDao bookDao();
 
+    public abstract BlockFtsDao blockFtsDao();
+
+    public abstract LibraryStatsDao libraryStatsDao();
+
+    public abstract ReadingProgressDao readingProgressDao();
+
     static final Migration MIGRATION_1_2 = new Migration(1, 2) {
         @Override
         public void migrate(SupportSQLiteDatabase database) {
@@ -53,12 +70,478 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     };
 
+    // Текст книги переезжает из books.content в отдельную таблицу book_contents.
+    // SQLite на minSdk 24 не умеет DROP COLUMN, поэтому books пересоздаётся.
+    // Текст сначала складываем во временную таблицу без внешнего ключа, чтобы
+    // DROP TABLE books не задел строки book_contents каскадным удалением.
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `books_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `title` TEXT, `author` TEXT, "
+                    + "`genre` TEXT, `year` INTEGER NOT NULL, `status` TEXT, `notes` TEXT, "
+                    + "`rating` REAL NOT NULL, `dateAdded` INTEGER, `dateRead` INTEGER, "
+                    + "`lastPage` INTEGER NOT NULL, `totalPages` INTEGER NOT NULL, "
+                    + "`scrollPercent` INTEGER NOT NULL, `readerPosition` INTEGER NOT NULL, "
+                    + "`readerOffset` INTEGER NOT NULL, `readerPercent` INTEGER NOT NULL)");
+            database.execSQL("INSERT INTO books_new (id, title, author, genre, year, status, notes, "
+                    + "rating, dateAdded, dateRead, lastPage, totalPages, scrollPercent, "
+                    + "readerPosition, readerOffset, readerPercent) "
+                    + "SELECT id, title, author, genre, year, status, notes, "
+                    + "rating, dateAdded, dateRead, lastPage, totalPages, scrollPercent, "
+                    + "readerPosition, readerOffset, readerPercent FROM books");
+
+            database.execSQL("CREATE TABLE content_tmp AS SELECT id AS bookId, content FROM books "
+                    + "WHERE content IS NOT NULL AND content != ''");
+
+            database.execSQL("DROP TABLE books");
+            database.execSQL("ALTER TABLE books_new RENAME TO books");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `book_contents` ("
+                    + "`bookId` INTEGER NOT NULL, `content` TEXT, PRIMARY KEY(`bookId`), "
+                    + "FOREIGN KEY(`bookId`) REFERENCES `books`(`id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("INSERT INTO book_contents (bookId, content) "
+                    + "SELECT bookId, content FROM content_tmp");
+            database.execSQL("DROP TABLE content_tmp");
+        }
+    };
+
+    // Текст из book_contents режется на блоки и переезжает в book_blocks.
+    // Длинный текст читаем кусками через substr, чтобы строка не упёрлась в CursorWindow.
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        private static final int READ_CHUNK_CHARS = 256 * 1024;
+
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `book_blocks` ("
+                    + "`bookId` INTEGER NOT NULL, `blockIndex` INTEGER NOT NULL, `text` TEXT, "
+                    + "PRIMARY KEY(`bookId`, `blockIndex`), "
+                    + "FOREIGN KEY(`bookId`) REFERENCES `books`(`id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+
+            List<int[]> rows = new ArrayList<>();
+            try (Cursor c = database.query("SELECT bookId, length(content) FROM book_contents")) {
+                while (c.moveToNext()) {
+                    rows.add(new int[]{c.getInt(0), c.getInt(1)});
+                }
+            }
+
+            SupportSQLiteStatement insert = database.compileStatement(
+                    "INSERT INTO book_blocks (bookId, blockIndex, text) VALUES (?, ?, ?)");
+            for (int[] row : rows) {
+                int bookId = row[0];
+                int length = row[1];
+
+                StringBuilder content = new StringBuilder(length);
+                for (int start = 1; start <= length; start += READ_CHUNK_CHARS) {
+                    try (Cursor c = database.query(
+                            "SELECT substr(content, ?, ?) FROM book_contents WHERE bookId = ?",
+                            new Object[]{start, READ_CHUNK_CHARS, bookId})) {
+                        if (c.moveToFirst()) content.append(c.getString(0));
+                    }
+                }
+
+                List<String> blocks = BlockSplitter.split(content.toString());
+                for (int i = 0; i < blocks.size(); i++) {
+                    insert.bindLong(1, bookId);
+                    insert.bindLong(2, i);
+                    insert.bindString(3, blocks.get(i));
+                    insert.executeInsert();
+                    insert.clearBindings();
+                }
+            }
+
+            database.execSQL("DROP TABLE book_contents");
+        }
+    };
+
+    // Блоки текста пакуются в сжатые куски (BlockCodec) по BLOCKS_PER_CHUNK блоков
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `book_chunks` ("
+                    + "`bookId` INTEGER NOT NULL, `chunkIndex` INTEGER NOT NULL, "
+                    + "`blockCount` INTEGER NOT NULL, `data` BLOB, "
+                    + "PRIMARY KEY(`bookId`, `chunkIndex`), "
+                    + "FOREIGN KEY(`bookId`) REFERENCES `books`(`id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+
+            List<int[]> books = new ArrayList<>();
+            try (Cursor c = database.query(
+                    "SELECT bookId, MAX(blockIndex) + 1 FROM book_blocks GROUP BY bookId")) {
+                while (c.moveToNext()) {
+                    books.add(new int[]{c.getInt(0), c.getInt(1)});
+                }
+            }
+
+            SupportSQLiteStatement insert = database.compileStatement(
+                    "INSERT INTO book_chunks (bookId, chunkIndex, blockCount, data) VALUES (?, ?, ?, ?)");
+            for (int[] book : books) {
+                int bookId = book[0];
+                int blockCount = book[1];
+
+                for (int from = 0; from < blockCount; from += BlockCodec.BLOCKS_PER_CHUNK) {
+                    List<String> blocks = new ArrayList<>(BlockCodec.BLOCKS_PER_CHUNK);
+                    try (Cursor c = database.query(
+                            "SELECT text FROM book_blocks WHERE bookId = ? "
+                                    + "AND blockIndex >= ? AND blockIndex < ? ORDER BY blockIndex",
+                            new Object[]{bookId, from, from + BlockCodec.BLOCKS_PER_CHUNK})) {
+                        while (c.moveToNext()) {
+                            String text = c.getString(0);
+                            blocks.add(text != null ? text : "");
+                        }
+                    }
+                    if (blocks.isEmpty()) continue;
+
+                    insert.bindLong(1, bookId);
+                    insert.bindLong(2, from / BlockCodec.BLOCKS_PER_CHUNK);
+                    insert.bindLong(3, blocks.size());
+                    insert.bindBlob(4, BlockCodec.encode(blocks));
+                    insert.executeInsert();
+                    insert.clearBindings();
+                }
+            }
+
+            database.execSQL("DROP TABLE book_blocks");
+            vacuumPending = true;
+        }
+    };
+
+    // Текст уходит из базы в файлы BookTextStore (UTF-8 + таблица смещений блоков).
+    // Миграции нужен Context, поэтому она создаётся в getInstance().
+    static Migration migration9To10(Context context) {
+        BookTextStore store = new BookTextStore(context);
+
+        return new Migration(9, 10) {
+            @Override
+            public void migrate(SupportSQLiteDatabase database) {
+                database.execSQL("ALTER TABLE books ADD COLUMN blockCount INTEGER NOT NULL DEFAULT 0");
+
+                List<Integer> bookIds = new ArrayList<>();
+                try (Cursor c = database.query("SELECT DISTINCT bookId FROM book_chunks")) {
+                    while (c.moveToNext()) {
+                        bookIds.add(c.getInt(0));
+                    }
+                }
+
+                for (int bookId : bookIds) {
+                    try (BookTextStore.Writer writer = store.newWriter()) {
+                        try (Cursor c = database.query(
+                                "SELECT data FROM book_chunks WHERE bookId = ? ORDER BY chunkIndex",
+                                new Object[]{bookId})) {
+                            while (c.moveToNext()) {
+                                for (String block : BlockCodec.decode(c.getBlob(0))) {
+                                    writer.writeBlock(block);
+                                }
+                            }
+                        }
+                        writer.commit(bookId);
+                        database.execSQL("UPDATE books SET blockCount = ? WHERE id = ?",
+                                new Object[]{writer.getBlockCount(), bookId});
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Не удалось перенести текст книги " + bookId, e);
+                    }
+                }
+
+                database.execSQL("DROP TABLE book_chunks");
+                vacuumPending = true;
+            }
+        };
+    }
+
+    // Полнотекстовый индекс по метаданным вместо LIKE '%...%'.
+    // Триггеры — те же, что Room создаёт для external content FTS на свежей базе.
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `books_fts` USING FTS4("
+                    + "`title` TEXT, `author` TEXT, `genre` TEXT, `notes` TEXT, "
+                    + "tokenize=unicode61, content=`books`)");
+            createBooksFtsTriggers(database);
+            database.execSQL("INSERT INTO books_fts(books_fts) VALUES('rebuild')");
+        }
+    };
+
+    static void createBooksFtsTriggers(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_books_fts_BEFORE_UPDATE "
+                + "BEFORE UPDATE ON `books` BEGIN DELETE FROM `books_fts` WHERE `docid`=OLD.`rowid`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_books_fts_BEFORE_DELETE "
+                + "BEFORE DELETE ON `books` BEGIN DELETE FROM `books_fts` WHERE `docid`=OLD.`rowid`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_books_fts_AFTER_UPDATE "
+                + "AFTER UPDATE ON `books` BEGIN INSERT INTO `books_fts`"
+                + "(`docid`, `title`, `author`, `genre`, `notes`) VALUES "
+                + "(NEW.`rowid`, NEW.`title`, NEW.`author`, NEW.`genre`, NEW.`notes`); END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_books_fts_AFTER_INSERT "
+                + "AFTER INSERT ON `books` BEGIN INSERT INTO `books_fts`"
+                + "(`docid`, `title`, `author`, `genre`, `notes`) VALUES "
+                + "(NEW.`rowid`, NEW.`title`, NEW.`author`, NEW.`genre`, NEW.`notes`); END");
+    }
+
+    // Полнотекстовый индекс по тексту книг: строим для уже импортированных книг из файлов
+    static Migration migration11To12(Context context) {
+        BookTextStore store = new BookTextStore(context);
+
+        return new Migration(11, 12) {
+            @Override
+            public void migrate(SupportSQLiteDatabase database) {
+                database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `block_fts` "
+                        + "USING FTS4(`text` TEXT, tokenize=unicode61)");
+
+                List<Integer> bookIds = new ArrayList<>();
+                try (Cursor c = database.query("SELECT id FROM books WHERE blockCount > 0")) {
+                    while (c.moveToNext()) {
+                        bookIds.add(c.getInt(0));
+                    }
+                }
+
+                SupportSQLiteStatement insert = database.compileStatement(
+                        "INSERT INTO block_fts (rowid, text) VALUES (?, ?)");
+                for (int bookId : bookIds) {
+                    BookText text;
+                    try {
+                        text = store.open(bookId);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Не удалось прочитать текст книги " + bookId, e);
+                    }
+                    if (text == null) continue;
+
+                    for (int i = 0; i < text.getBlockCount(); i++) {
+                        insert.bindLong(1, BlockFts.rowid(bookId, i));
+                        insert.bindString(2, text.getBlock(i));
+                        insert.executeInsert();
+                        insert.clearBindings();
+                    }
+                }
+            }
+        };
+    }
+
+    // Индексы под запросы списка и статистики + сортировка названий без учёта регистра.
+    // Сменить collation колонки можно только пересозданием таблицы; триггеры books_fts
+    // удаляются вместе со старой books и создаются заново.
+    static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `books_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `title` TEXT COLLATE UNICODE, "
+                    + "`author` TEXT, `genre` TEXT, `year` INTEGER NOT NULL, `status` TEXT, `notes` TEXT, "
+                    + "`rating` REAL NOT NULL, `dateAdded` INTEGER, `dateRead` INTEGER, "
+                    + "`lastPage` INTEGER NOT NULL, `totalPages` INTEGER NOT NULL, "
+                    + "`scrollPercent` INTEGER NOT NULL, `readerPosition` INTEGER NOT NULL, "
+                    + "`readerOffset` INTEGER NOT NULL, `readerPercent` INTEGER NOT NULL, "
+                    + "`blockCount` INTEGER NOT NULL)");
+            database.execSQL("INSERT INTO books_new (id, title, author, genre, year, status, notes, "
+                    + "rating, dateAdded, dateRead, lastPage, totalPages, scrollPercent, "
+                    + "readerPosition, readerOffset, readerPercent, blockCount) "
+                    + "SELECT id, title, author, genre, year, status, notes, "
+                    + "rating, dateAdded, dateRead, lastPage, totalPages, scrollPercent, "
+                    + "readerPosition, readerOffset, readerPercent, blockCount FROM books");
+
+            database.execSQL("DROP TABLE books");
+            database.execSQL("ALTER TABLE books_new RENAME TO books");
+
+            createBooksFtsTriggers(database);
+            createBookIndexes(database);
+        }
+    };
+
+    static void createBookIndexes(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_books_title` ON `books` (`title`)");
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_books_dateAdded` ON `books` (`dateAdded`)");
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_books_status_title` "
+                + "ON `books` (`status`, `title`)");
+        database.execSQL("CREATE INDEX IF NOT EXISTS `index_books_status_dateRead` "
+                + "ON `books` (`status`, `dateRead`)");
+    }
+
+    // Статистика ведётся триггерами в library_stats, а не пересчитывается агрегатами по books
+    static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `library_stats` ("
+                    + "`statKey` TEXT NOT NULL, `value` REAL NOT NULL, PRIMARY KEY(`statKey`))");
+            createLibraryStatsTriggers(database);
+            rebuildLibraryStats(database);
+        }
+    };
+
+    // Пересчёт с нуля — при создании таблицы; дальше значения меняют только триггеры
+    static void rebuildLibraryStats(SupportSQLiteDatabase database) {
+        database.execSQL("DELETE FROM library_stats");
+        database.execSQL("INSERT INTO library_stats (statKey, value) "
+                + "SELECT '" + LibraryStat.KEY_TOTAL + "', COUNT(*) FROM books");
+        database.execSQL("INSERT INTO library_stats (statKey, value) "
+                + "SELECT '" + LibraryStat.PREFIX_STATUS + "' || status, COUNT(*) FROM books "
+                + "WHERE status IS NOT NULL GROUP BY status");
+        database.execSQL("INSERT INTO library_stats (statKey, value) "
+                + "SELECT '" + LibraryStat.KEY_RATING_SUM + "', IFNULL(SUM(rating), 0) FROM books "
+                + "WHERE status = 'read' AND rating > 0");
+        database.execSQL("INSERT INTO library_stats (statKey, value) "
+                + "SELECT '" + LibraryStat.KEY_RATING_COUNT + "', COUNT(*) FROM books "
+                + "WHERE status = 'read' AND rating > 0");
+        database.execSQL("INSERT INTO library_stats (statKey, value) "
+                + "SELECT '" + LibraryStat.PREFIX_READ_YEAR + "' || strftime('%Y', dateRead / 1000, 'unixepoch'), "
+                + "COUNT(*) FROM books WHERE status = 'read' AND dateRead IS NOT NULL GROUP BY 1");
+        database.execSQL("INSERT INTO library_stats (statKey, value) "
+                + "SELECT '" + LibraryStat.PREFIX_READ_MONTH + "' || strftime('%Y-%m', dateRead / 1000, 'unixepoch'), "
+                + "COUNT(*) FROM books WHERE status = 'read' AND dateRead IS NOT NULL GROUP BY 1");
+    }
+
+    // Триггеры на books нужно создавать заново после каждого пересоздания таблицы.
+    // UPDATE срабатывает только при смене status/rating/dateRead, поэтому сохранение
+    // позиции чтения не трогает library_stats и не перезапускает наблюдателей статистики.
+    static void createLibraryStatsTriggers(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS library_stats_AFTER_INSERT AFTER INSERT ON `books` BEGIN "
+                + statDelta("'" + LibraryStat.KEY_TOTAL + "'", "1", "1")
+                + rowStats("NEW", "1")
+                + "END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS library_stats_AFTER_DELETE AFTER DELETE ON `books` BEGIN "
+                + statDelta("'" + LibraryStat.KEY_TOTAL + "'", "-1", "1")
+                + rowStats("OLD", "-1")
+                + "END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS library_stats_AFTER_UPDATE AFTER UPDATE ON `books` "
+                + "WHEN OLD.status IS NOT NEW.status OR OLD.rating IS NOT NEW.rating "
+                + "OR OLD.dateRead IS NOT NEW.dateRead BEGIN "
+                + rowStats("OLD", "-1")
+                + rowStats("NEW", "1")
+                + "END");
+    }
+
+    // Прочитано по месяцам (read_month:*) — для истории чтения за все годы.
+    // Триггеры пересоздаются с новыми ключами, таблица пересчитывается один раз.
+    static final Migration MIGRATION_14_15 = new Migration(14, 15) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("DROP TRIGGER IF EXISTS library_stats_AFTER_INSERT");
+            database.execSQL("DROP TRIGGER IF EXISTS library_stats_AFTER_DELETE");
+            database.execSQL("DROP TRIGGER IF EXISTS library_stats_AFTER_UPDATE");
+            createLibraryStatsTriggers(database);
+            rebuildLibraryStats(database);
+        }
+    };
+
+    // Вклад одной строки books (NEW или OLD) со знаком sign
+    private static String rowStats(String row, String sign) {
+        String rated = row + ".status = 'read' AND " + row + ".rating > 0";
+        String read = row + ".status = 'read' AND " + row + ".dateRead IS NOT NULL";
+        return statDelta("'" + LibraryStat.PREFIX_STATUS + "' || " + row + ".status", sign,
+                        row + ".status IS NOT NULL")
+                + statDelta("'" + LibraryStat.KEY_RATING_SUM + "'", sign + " * " + row + ".rating", rated)
+                + statDelta("'" + LibraryStat.KEY_RATING_COUNT + "'", sign, rated)
+                + statDelta("'" + LibraryStat.PREFIX_READ_YEAR + "' || strftime('%Y', " + row
+                                + ".dateRead / 1000, 'unixepoch')", sign, read)
+                + statDelta("'" + LibraryStat.PREFIX_READ_MONTH + "' || strftime('%Y-%m', " + row
+                                + ".dateRead / 1000, 'unixepoch')", sign, read);
+    }
+
+    // UPSERT появился в SQLite 3.24, а на API 24 его нет — INSERT OR IGNORE + UPDATE
+    private static String statDelta(String key, String delta, String when) {
+        return "INSERT OR IGNORE INTO library_stats (statKey, value) SELECT " + key + ", 0 WHERE " + when + "; "
+                + "UPDATE library_stats SET value = value + (" + delta + ") "
+                + "WHERE statKey = " + key + " AND " + when + "; ";
+    }
+
+    // На свежей базе Room создаёт таблицы сам, триггеры — за нами
+    private static final Callback LIBRARY_STATS_TRIGGERS = new Callback() {
+        @Override
+        public void onCreate(SupportSQLiteDatabase db) {
+            createLibraryStatsTriggers(db);
+            rebuildLibraryStats(db);
+        }
+    };
+
+    // Позиция читалки переезжает из books в reading_progress.
+    // books пересоздаётся без этих колонок; вместе со старой таблицей исчезают
+    // её индексы и триггеры books_fts/library_stats — создаём их заново.
+    // Позиции сначала во временной таблице: reading_progress ссылается на books,
+    // поэтому создаём её уже после пересоздания books.
+    static final Migration MIGRATION_15_16 = new Migration(15, 16) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE progress_tmp AS "
+                    + "SELECT id AS bookId, readerPosition, readerOffset, readerPercent FROM books "
+                    + "WHERE readerPosition > 0 OR readerOffset > 0 OR readerPercent > 0");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `books_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `title` TEXT COLLATE UNICODE, "
+                    + "`author` TEXT, `genre` TEXT, `year` INTEGER NOT NULL, `status` TEXT, `notes` TEXT, "
+                    + "`rating` REAL NOT NULL, `dateAdded` INTEGER, `dateRead` INTEGER, "
+                    + "`lastPage` INTEGER NOT NULL, `totalPages` INTEGER NOT NULL, "
+                    + "`scrollPercent` INTEGER NOT NULL, `blockCount` INTEGER NOT NULL)");
+            database.execSQL("INSERT INTO books_new (id, title, author, genre, year, status, notes, "
+                    + "rating, dateAdded, dateRead, lastPage, totalPages, scrollPercent, blockCount) "
+                    + "SELECT id, title, author, genre, year, status, notes, "
+                    + "rating, dateAdded, dateRead, lastPage, totalPages, scrollPercent, blockCount FROM books");
+
+            database.execSQL("DROP TABLE books");
+            database.execSQL("ALTER TABLE books_new RENAME TO books");
+
+            createBooksFtsTriggers(database);
+            createLibraryStatsTriggers(database);
+            createBookIndexes(database);
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `reading_progress` ("
+                    + "`bookId` INTEGER NOT NULL, `readerPosition` INTEGER NOT NULL, "
+                    + "`readerOffset` INTEGER NOT NULL, `readerPercent` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`bookId`), "
+                    + "FOREIGN KEY(`bookId`) REFERENCES `books`(`id`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("INSERT INTO reading_progress (bookId, readerPosition, readerOffset, readerPercent) "
+                    + "SELECT bookId, readerPosition, readerOffset, readerPercent FROM progress_tmp");
+            database.execSQL("DROP TABLE progress_tmp");
+        }
+    };
+
+    // Ленивый импорт: откуда подгрузить текст книги при первом открытии
+    static final Migration MIGRATION_16_17 = new Migration(16, 17) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE books ADD COLUMN sourceUri TEXT");
+        }
+    };
+
+    // Поиск дубликатов при импорте: хэш текста и индекс по нему. Старые книги остаются
+    // без хэша — хранятся блоки, а хэш считается по абзацам FB2
+    static final Migration MIGRATION_17_18 = new Migration(17, 18) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE books ADD COLUMN contentHash TEXT");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_books_contentHash` ON `books` (`contentHash`)");
+        }
+    };
+
+    // Версия текста книги: читалка перечитывает текст, только когда она сменилась
+    static final Migration MIGRATION_18_19 = new Migration(18, 19) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE books ADD COLUMN textVersion INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    // VACUUM нельзя выполнять внутри транзакции миграции, поэтому — после открытия
+    private static final Callback VACUUM_AFTER_MIGRATION = new Callback() {
+        @Override
+        public void onOpen(SupportSQLiteDatabase db) {
+            if (vacuumPending) {
+                vacuumPending = false;
+                db.execSQL("VACUUM");
+            }
+        }
+    };
 
     public static synchronized AppDatabase getInstance(Context context) {
         if (instance == null) {
             instance = Room.databaseBuilder(context.getApplicationContext(),
                             AppDatabase.class, DATABASE_NAME)
-                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6)
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6,
+                            MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9,
+                            migration9To10(context.getApplicationContext()), MIGRATION_10_11,
+                            migration11To12(context.getApplicationContext()), MIGRATION_12_13,
+                            MIGRATION_13_14, MIGRATION_14_15, MIGRATION_15_16, MIGRATION_16_17,
+                            MIGRATION_17_18, MIGRATION_18_19)
+                    .addCallback(LIBRARY_STATS_TRIGGERS)
+                    .addCallback(VACUUM_AFTER_MIGRATION)
                     .build();
         }
         return instance;
@@ -0,0 +1,78 @@
+package com.example.booklibrary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Потоковое декодирование base64 (содержимое <binary> в FB2): символы подаются
+ * кусками, байты сразу уходят в out — ни строка, ни массив всех байтов не собираются.
+ * Пробелы и переводы строк пропускаются; после '=' ввод игнорируется.
+ */
+final class Base64Decoder {
+
+    private static final int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            VALUES[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int buffered;
+    private int quantum;   // накопленные 6-битные группы
+    private int count;     // сколько групп в quantum (0..3)
+    private boolean ended;
+
+    Base64Decoder(OutputStream out) {
+        this.out = out;
+    }
+
+    void write(char[] chars, int start, int length) throws IOException {
+        for (int i = start, end = start + length; i < end && !ended; i++) {
+            char c = chars[i];
+            if (c == '=') {
+                ended = true;
+                break;
+            }
+            int value = c < 128 ? VALUES[c] : -1;
+            if (value < 0) continue;  // пробелы, переводы строк, мусор
+
+            quantum = (quantum << 6) | value;
+            if (++count == 4) {
+                put(quantum >> 16);
+                put(quantum >> 8);
+                put(quantum);
+                quantum = 0;
+                count = 0;
+            }
+        }
+    }
+
+    // Дописывает неполную четвёрку (2 группы — 1 байт, 3 группы — 2 байта) и сбрасывает буфер
+    void finish() throws IOException {
+        if (count == 2) {
+            put(quantum >> 4);
+        } else if (count == 3) {
+            put(quantum >> 10);
+            put(quantum >> 2);
+        }
+        count = 0;
+        if (buffered > 0) {
+            out.write(buffer, 0, buffered);
+            buffered = 0;
+        }
+    }
+
+    private void put(int b) throws IOException {
+        if (buffered == buffer.length) {
+            out.write(buffer, 0, buffered);
+            buffered = 0;
+        }
+        buffer[buffered++] = (byte) b;
+    }
+}
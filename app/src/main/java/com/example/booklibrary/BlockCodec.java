@@ -0,0 +1,69 @@
+package com.example.booklibrary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Упаковка блоков текста в сжатый кусок для book_chunks (схема 9).
+ * Текст теперь хранится в файлах BookTextStore, кодек нужен миграциям 8→9→10.
+ *
+ * Формат до сжатия: int count, затем для каждого блока int length + UTF-8 байты.
+ * Сжимаем кусками по несколько десятков абзацев: один абзац слишком короткий,
+ * чтобы Deflater успел набрать словарь.
+ */
+public final class BlockCodec {
+
+    public static final int BLOCKS_PER_CHUNK = 64;
+
+    private BlockCodec() { }
+
+    public static byte[] encode(List<String> blocks) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+                out.writeInt(blocks.size());
+                for (String block : blocks) {
+                    byte[] utf8 = block.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // ByteArrayOutputStream не бросает IOException
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static List<String> decode(byte[] data) {
+        Inflater inflater = new Inflater();
+        try (DataInputStream in = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(data), inflater))) {
+            int count = in.readInt();
+            List<String> blocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] utf8 = new byte[in.readInt()];
+                in.readFully(utf8);
+                blocks.add(new String(utf8, StandardCharsets.UTF_8));
+            }
+            return blocks;
+        } catch (IOException e) {
+            throw new IllegalStateException("Повреждённый кусок текста", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.booklibrary;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Полнотекстовый индекс по тексту книг: одна строка на блок.
+ * rowid = (bookId << 32) | blockIndex — книга и блок восстанавливаются из rowid,
+ * а все блоки книги лежат одним диапазоном rowid (удаление без перебора индекса).
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "block_fts")
+public class BlockFts {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private long rowid;
+
+    private String text;
+
+    public BlockFts(long rowid, String text) {
+        this.rowid = rowid;
+        this.text = text;
+    }
+
+    public static long rowid(int bookId, int blockIndex) {
+        return ((long) bookId << 32) | (blockIndex & 0xFFFFFFFFL);
+    }
+
+    public static long firstRowid(int bookId) {
+        return rowid(bookId, 0);
+    }
+
+    public static long lastRowid(int bookId) {
+        return ((long) bookId << 32) | 0xFFFFFFFFL;
+    }
+
+    public long getRowid() { return rowid; }
+    public void setRowid(long rowid) { this.rowid = rowid; }
+
+    public String getText() { return text; }
+    public void setText(String text) { this.text = text; }
+}
@@ -0,0 +1,27 @@
+package com.example.booklibrary;
+
+import androidx.paging.PagingSource;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface BlockFtsDao {
+
+    @Insert
+    void insert(List<BlockFts> blocks);
+
+    // Все блоки книги — один диапазон rowid (см. BlockFts)
+    @Query("DELETE FROM block_fts WHERE rowid BETWEEN :firstRowid AND :lastRowid")
+    void deleteRange(long firstRowid, long lastRowid);
+
+    // Постранично: в памяти только загруженные страницы совпадений, а не все сразу
+    @Query("SELECT block_fts.rowid >> 32 AS bookId, block_fts.rowid & 4294967295 AS blockIndex, "
+            + "books.title AS title, "
+            + "snippet(block_fts, '" + BlockHit.MARK_START + "', '" + BlockHit.MARK_END + "', '…', -1, 16) AS snippet "
+            + "FROM block_fts JOIN books ON books.id = block_fts.rowid >> 32 "
+            + "WHERE block_fts MATCH :match ORDER BY block_fts.rowid")
+    PagingSource<Integer, BlockHit> search(String match);
+}
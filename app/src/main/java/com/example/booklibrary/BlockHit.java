@@ -0,0 +1,28 @@
+package com.example.booklibrary;
+
+/**
+ * Совпадение поиска по тексту книг: книга, блок и фрагмент вокруг совпадения.
+ * Совпавшие слова в snippet обрамлены MARK_START / MARK_END.
+ */
+public class BlockHit {
+
+    public static final String MARK_START = "\u0001";
+    public static final String MARK_END = "\u0002";
+
+    private int bookId;
+    private int blockIndex;
+    private String title;
+    private String snippet;
+
+    public int getBookId() { return bookId; }
+    public void setBookId(int bookId) { this.bookId = bookId; }
+
+    public int getBlockIndex() { return blockIndex; }
+    public void setBlockIndex(int blockIndex) { this.blockIndex = blockIndex; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getSnippet() { return snippet; }
+    public void setSnippet(String snippet) { this.snippet = snippet; }
+}
@@ -0,0 +1,111 @@
+package com.example.booklibrary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Делит сплошной текст книги на блоки (абзацы) для читалки.
+ *
+ * Блоки разделяются пустыми строками (два '\n' подряд после замены \r\n и \r на '\n'),
+ * пробелы по краям блока отбрасываются. Разбор — один проход по одной копии текста:
+ * блоки — пары (начало, длина) в общем char[], без строки на блок.
+ */
+public final class BlockSplitter {
+
+    private BlockSplitter() { }
+
+    /** Блоки одного текста: отрезки общего массива символов. */
+    public static final class Blocks {
+        private final char[] chars;
+        private final int[] bounds;  // start0, length0, start1, length1, ...
+        private final int count;
+
+        private Blocks(char[] chars, int[] bounds, int count) {
+            this.chars = chars;
+            this.bounds = bounds;
+            this.count = count;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public char[] array() {
+            return chars;
+        }
+
+        public int start(int index) {
+            return bounds[2 * index];
+        }
+
+        public int length(int index) {
+            return bounds[2 * index + 1];
+        }
+
+        // Вид на блок без копирования
+        public CharSequence get(int index) {
+            return new CharBlock(chars, start(index), length(index));
+        }
+    }
+
+    public static Blocks segment(CharSequence text) {
+        int n = text.length();
+        char[] chars = new char[n];
+        if (text instanceof String) {
+            ((String) text).getChars(0, n, chars, 0);
+        } else {
+            for (int i = 0; i < n; i++) chars[i] = text.charAt(i);
+        }
+
+        int[] bounds = new int[16];
+        int count = 0;
+        int start = -1;     // первый непробельный символ текущего блока
+        int last = -1;      // последний непробельный
+        boolean newline = false;
+
+        // \r\n и \r заменяются на '\n' прямо в массиве: запись никогда не обгоняет чтение
+        int w = 0;
+        for (int r = 0; r < n; r++, w++) {
+            char c = chars[r];
+            if (c == '\r') {
+                c = '\n';
+                if (r + 1 < n && chars[r + 1] == '\n') r++;
+            }
+            chars[w] = c;
+
+            if (c == '\n') {
+                if (newline && start >= 0) {
+                    if (2 * count + 2 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                    bounds[2 * count] = start;
+                    bounds[2 * count + 1] = last + 1 - start;
+                    count++;
+                    start = -1;
+                }
+                newline = true;
+            } else {
+                newline = false;
+            }
+            if (c > ' ') {  // как String.trim()
+                if (start < 0) start = w;
+                last = w;
+            }
+        }
+        if (start >= 0) {
+            if (2 * count + 2 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length + 2);
+            bounds[2 * count] = start;
+            bounds[2 * count + 1] = last + 1 - start;
+            count++;
+        }
+        return new Blocks(chars, bounds, count);
+    }
+
+    public static List<String> split(String text) {
+        Blocks blocks = segment(text);
+        List<String> result = new ArrayList<>(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            result.add(new String(blocks.array(), blocks.start(i), blocks.length(i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.booklibrary;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import androidx.core.text.PrecomputedTextCompat;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Готовит PrecomputedTextCompat для блоков вокруг позиции читалки в фоне: измерение
+ * и шейпинг длинных абзацев уходят из UI-потока, при привязке остаётся только
+ * разбивка на строки. Готовые тексты — в LRU на MAX_CACHED блоков; промах — обычный setText.
+ * Все методы — только из UI-потока.
+ */
+final class BlockTextPrefetcher {
+
+    // Сколько блоков готовить в каждую сторону от привязанного
+    static final int AHEAD = 8;
+    private static final int MAX_CACHED = 4 * AHEAD;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<Integer, PrecomputedTextCompat> cache = new LruCache<>(MAX_CACHED);
+    private final Set<Integer> pending = new HashSet<>();
+
+    private PrecomputedTextCompat.Params params;
+    private BlockWindow window;
+    private int generation;   // растёт при смене окна или параметров: старые результаты выбрасываются
+    // Последняя привязанная позиция: при быстрой прокрутке задачи, от которых
+    // она уже ушла, в очереди пропускаются
+    private volatile int center;
+
+    // Параметры текста из TextView блока (шрифт, размер, перенос) — с ними же он и покажет
+    void setParams(PrecomputedTextCompat.Params params) {
+        if (params.equals(this.params)) return;
+        this.params = params;
+        clear();
+    }
+
+    boolean hasParams() {
+        return params != null;
+    }
+
+    void setWindow(BlockWindow window) {
+        this.window = window;
+        clear();
+    }
+
+    // null — блок ещё не подготовлен
+    PrecomputedTextCompat get(int index) {
+        return cache.get(index);
+    }
+
+    // Ближние блоки — первыми
+    void prefetchAround(int index) {
+        center = index;
+        if (window == null || params == null) return;
+        for (int d = 1; d <= AHEAD; d++) {
+            request(index + d);
+            request(index - d);
+        }
+    }
+
+    private void request(int index) {
+        if (index < 0 || index >= window.getBlockCount()) return;
+        if (pending.contains(index) || cache.get(index) != null) return;
+        CharSequence text = window.peekBlock(index);
+        if (text == null) return;  // страница ещё грузится — вернёмся при следующей привязке
+
+        pending.add(index);
+        int gen = generation;
+        PrecomputedTextCompat.Params p = params;
+        executor.execute(() -> {
+            PrecomputedTextCompat result = Math.abs(index - center) <= 2 * AHEAD
+                    ? PrecomputedTextCompat.create(text, p)
+                    : null;
+            mainHandler.post(() -> {
+                if (gen != generation) return;
+                pending.remove(index);
+                if (result != null) cache.put(index, result);
+            });
+        });
+    }
+
+    private void clear() {
+        generation++;
+        pending.clear();
+        cache.evictAll();
+    }
+
+    void release() {
+        clear();
+        window = null;
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.booklibrary;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Скользящее окно блоков текста для читалки.
+ *
+ * Блоки грузятся страницами по PAGE_SIZE штук, в памяти держится не больше
+ * MAX_PAGES страниц (LRU), поэтому память и время открытия не зависят
+ * от размера книги. Все методы, кроме loadPage(), — только из UI-потока.
+ */
+public class BlockWindow {
+
+    // Блокирующая загрузка блоков [from, to)
+    public interface Loader {
+        List<CharSequence> load(int from, int to);
+    }
+
+    public interface Listener {
+        void onBlocksLoaded(int from, int count);
+    }
+
+    public static final int PAGE_SIZE = 64;
+    private static final int MAX_PAGES = 6;
+
+    private final int blockCount;
+    private final Loader loader;
+    private final Executor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final LinkedHashMap<Integer, List<CharSequence>> pages =
+            new LinkedHashMap<Integer, List<CharSequence>>(MAX_PAGES + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<CharSequence>> eldest) {
+                    return size() > MAX_PAGES;
+                }
+            };
+    private final Set<Integer> pending = new HashSet<>();
+
+    private Listener listener;
+    private boolean released;
+
+    public BlockWindow(int blockCount, Loader loader, Executor executor) {
+        this.blockCount = blockCount;
+        this.loader = loader;
+        this.executor = executor;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public static int pageOf(int blockIndex) {
+        return blockIndex / PAGE_SIZE;
+    }
+
+    // Синхронная загрузка страницы — из фонового потока (например, для первого показа)
+    public List<CharSequence> loadPage(int page) {
+        int from = page * PAGE_SIZE;
+        int to = Math.min(from + PAGE_SIZE, blockCount);
+        return loader.load(from, to);
+    }
+
+    public void putPage(int page, List<CharSequence> blocks) {
+        pages.put(page, blocks);
+    }
+
+    /**
+     * Блок по индексу или null, если его страница ещё грузится.
+     * Заодно подгружает соседнюю страницу, когда позиция подходит к краю окна.
+     */
+    public CharSequence getBlock(int index) {
+        int page = pageOf(index);
+        List<CharSequence> blocks = pages.get(page);
+        prefetchAround(index);
+
+        if (blocks == null) return null;
+        int inPage = index - page * PAGE_SIZE;
+        return inPage < blocks.size() ? blocks.get(inPage) : null;
+    }
+
+    // Блок из уже загруженной страницы или null; в отличие от getBlock() ничего не подгружает
+    public CharSequence peekBlock(int index) {
+        int page = pageOf(index);
+        List<CharSequence> blocks = pages.get(page);
+        if (blocks == null) return null;
+        int inPage = index - page * PAGE_SIZE;
+        return inPage < blocks.size() ? blocks.get(inPage) : null;
+    }
+
+    private void prefetchAround(int index) {
+        int page = pageOf(index);
+        request(page);
+
+        int inPage = index - page * PAGE_SIZE;
+        if (inPage < PAGE_SIZE / 4) {
+            request(page - 1);
+        } else if (inPage >= PAGE_SIZE * 3 / 4) {
+            request(page + 1);
+        }
+    }
+
+    private void request(int page) {
+        if (released) return;
+        if (page < 0 || page * PAGE_SIZE >= blockCount) return;
+        if (pages.containsKey(page) || pending.contains(page)) return;
+
+        pending.add(page);
+        executor.execute(() -> {
+            List<CharSequence> blocks = loadPage(page);
+            mainHandler.post(() -> {
+                pending.remove(page);
+                if (released) return;
+                pages.put(page, blocks);
+                if (listener != null) listener.onBlocksLoaded(page * PAGE_SIZE, blocks.size());
+            });
+        });
+    }
+
+    public void release() {
+        released = true;
+        listener = null;
+        pages.clear();
+    }
+}
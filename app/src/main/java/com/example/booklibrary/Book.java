@@ -1,12 +1,22 @@
 package com.example.booklibrary;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import java.util.Date;
 
-@Entity(tableName = "books")
+// Индексы под запросы BookDao; покрытие проверяет BookDaoQueryPlanTest
+@Entity(tableName = "books",
+        indices = {
+                @Index("title"),
+                @Index("dateAdded"),
+                @Index({"status", "title"}),
+                @Index({"status", "dateRead"}),
+                @Index("contentHash")
+        })
 public class Book {
 
     public static final String STATUS_PLANNED = "planned";
@@ -16,6 +26,8 @@ public class Book {
     @PrimaryKey(autoGenerate = true)
     private int id;
 
+    // UNICODE — сортировка без учёта регистра, в том числе для кириллицы (NOCASE знает только ASCII)
+    @ColumnInfo(collate = ColumnInfo.UNICODE)
     private String title;
     private String author;
     private String genre;
@@ -25,7 +37,6 @@ public class Book {
     private float rating;
     private Date dateAdded;
     private Date dateRead;
-    private String content;
 
     // Старое (постраничное) — оставляем для совместимости
     private int lastPage;
@@ -34,9 +45,22 @@ public class Book {
     // Новое — прогресс прокрутки (0..100)
     private int scrollPercent = 0;
 
-    private int readerPosition = 0;   // индекс первого видимого блока
-    private int readerOffset = 0;     // смещение в px внутри блока (сколько прокрутили вниз)
-    private int readerPercent = 0;    // 0..100 (чтобы быстро показывать прогресс в списке)
+    // Позиция читалки — в ReadingProgress (таблица reading_progress)
+
+    // Сколько блоков в тексте книги (сам текст — в файлах BookTextStore); 0 — текста нет
+    private int blockCount = 0;
+
+    // Файл FB2, из которого текст подгружается при первом открытии (импорт только
+    // метаданных); у записи архива — фрагмент #имя-записи. null — текст уже в BookTextStore
+    private String sourceUri;
+
+    // SHA-256 текста (ParsedBook.contentHash) — для поиска дубликатов при импорте;
+    // null — текст ещё не загружен или книга добавлена вручную
+    private String contentHash;
+
+    // Меняется при каждой записи текста (BookRepository.commitAndIndex); по ней читалка
+    // отличает смену текста от правки остальных полей. 0 — текст ни разу не записывался
+    private long textVersion = 0;
 
     public Book() {
         this.dateAdded = new Date();
@@ -86,9 +110,6 @@ public class Book {
     public Date getDateRead() { return dateRead; }
     public void setDateRead(Date dateRead) { this.dateRead = dateRead; }
 
-    public String getContent() { return content; }
-    public void setContent(String content) { this.content = content; }
-
     public int getLastPage() { return lastPage; }
     public void setLastPage(int lastPage) { this.lastPage = lastPage; }
 
@@ -102,17 +123,6 @@ public class Book {
         this.scrollPercent = scrollPercent;
     }
 
-    // Прогресс в процентах (0..100) — теперь учитывает scrollPercent
-    public float getProgress() {
-        // Если читаем — показываем прогресс читалки
-        if (STATUS_READING.equals(status)) {
-            return (float) readerPercent;
-        }
-
-        if (totalPages == 0 && lastPage == 0) return 0f;
-        return (float) (lastPage + 1) / (float) totalPages * 100f;
-    }
-
     public boolean isRead() {
         return STATUS_READ.equals(status);
     }
@@ -125,21 +135,25 @@ public class Book {
         return STATUS_PLANNED.equals(status);
     }
 
-    public int getReaderPosition() { return readerPosition; }
-    public void setReaderPosition(int readerPosition) {
-        this.readerPosition = Math.max(0, readerPosition);
-    }
+    public int getBlockCount() { return blockCount; }
+    public void setBlockCount(int blockCount) { this.blockCount = blockCount; }
+
+    public String getSourceUri() { return sourceUri; }
+    public void setSourceUri(String sourceUri) { this.sourceUri = sourceUri; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public long getTextVersion() { return textVersion; }
+    public void setTextVersion(long textVersion) { this.textVersion = textVersion; }
 
-    public int getReaderOffset() { return readerOffset; }
-    public void setReaderOffset(int readerOffset) {
-        this.readerOffset = Math.max(0, readerOffset);
+    public boolean hasText() {
+        return blockCount > 0;
     }
 
-    public int getReaderPercent() { return readerPercent; }
-    public void setReaderPercent(int readerPercent) {
-        if (readerPercent < 0) readerPercent = 0;
-        if (readerPercent > 100) readerPercent = 100;
-        this.readerPercent = readerPercent;
+    // Текст уже есть или разберётся из исходного файла при первом открытии читалки
+    public boolean canOpenInReader() {
+        return hasText() || sourceUri != null;
     }
 
 }
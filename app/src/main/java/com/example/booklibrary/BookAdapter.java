@@ -1,16 +1,19 @@
 package com.example.booklibrary;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Typeface;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.paging.PagingDataAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.card.MaterialCardView;
@@ -18,26 +21,24 @@ import com.google.android.material.card.MaterialCardView;
 import java.text.SimpleDateFormat;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Future;
 
-public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder> {
-    private List<Book> books;
+// Список библиотеки: страницы BookSummary из PagingSource (см. BookViewModel.getAllBooks)
+public class BookAdapter extends PagingDataAdapter<BookSummary, BookAdapter.BookViewHolder> {
     private OnBookClickListener listener;
     private SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy", Locale.getDefault());
 
     public interface OnBookClickListener {
-        void onBookClick(Book book);
-        void onBookLongClick(Book book);
+        void onBookClick(BookSummary book);
+        void onBookLongClick(BookSummary book);
     }
 
+    // Стабильные id у PagingDataAdapter не поддерживаются — элемент узнаётся по id в DiffUtil
     public BookAdapter(OnBookClickListener listener) {
+        super(new BookSummaryDiff());
         this.listener = listener;
     }
 
-    public void setBooks(List<Book> books) {
-        this.books = books;
-        notifyDataSetChanged();
-    }
-
     @NonNull
     @Override
     public BookViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -48,13 +49,29 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull BookViewHolder holder, int position) {
-        Book book = books.get(position);
-        holder.bind(book);
+        BookSummary book = getItem(position);
+        if (book != null) holder.bind(book);
     }
 
+    // Сохранение позиции читалки меняет только прогресс — карточка не перерисовывается целиком
     @Override
-    public int getItemCount() {
-        return books != null ? books.size() : 0;
+    public void onBindViewHolder(@NonNull BookViewHolder holder, int position, @NonNull List<Object> payloads) {
+        BookSummary book = getItem(position);
+        if (book == null) return;
+        if (payloads.isEmpty()) {
+            holder.bind(book);
+            return;
+        }
+        if (payloads.contains(BookSummaryDiff.PAYLOAD_STATUS)) {
+            holder.bindStatus(book);  // вместе с прогрессом
+        } else {
+            holder.bindProgress(book);
+        }
+    }
+
+    // peek, а не getItem: клик не должен подгружать страницы
+    private BookSummary bookAt(int position) {
+        return position != RecyclerView.NO_POSITION ? peek(position) : null;
     }
 
     class BookViewHolder extends RecyclerView.ViewHolder {
@@ -62,6 +79,15 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder
         private RatingBar ratingBar;
         private ProgressBar progressBar;
         private MaterialCardView cardView;
+        private ImageView imageCover;
+
+        private final CoverCache covers;
+        private int coverBookId;
+        private Future<?> coverTask;
+
+        // Цвета — один раз на карточку, а не при каждой привязке
+        private final int colorStatus, colorStatusNone, colorCardNone;
+        private final int colorCardPlanned, colorCardReading, colorCardRead;
 
         public BookViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -75,63 +101,73 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder
             textProgress = itemView.findViewById(R.id.textProgress);
             ratingBar = itemView.findViewById(R.id.ratingBar);
             cardView = itemView.findViewById(R.id.card_book);  // MaterialCardView
+            imageCover = itemView.findViewById(R.id.imageCover);
+            covers = CoverCache.getInstance(itemView.getContext());
+
+            Context context = itemView.getContext();
+            colorStatus = ContextCompat.getColor(context, android.R.color.darker_gray);
+            colorStatusNone = ContextCompat.getColor(context, R.color.light_gray);
+            colorCardNone = ContextCompat.getColor(context, R.color.paper_white);
+            colorCardPlanned = ContextCompat.getColor(context, R.color.card_planned);
+            colorCardReading = ContextCompat.getColor(context, R.color.card_reading);
+            colorCardRead = ContextCompat.getColor(context, R.color.card_read);
+            textStatus.setTypeface(null, Typeface.BOLD);
 
             itemView.setOnClickListener(v -> {
-                int position = getAdapterPosition();
-                if (position != RecyclerView.NO_POSITION && listener != null) {
-                    listener.onBookClick(books.get(position));
+                BookSummary book = bookAt(getBindingAdapterPosition());
+                if (book != null && listener != null) {
+                    listener.onBookClick(book);
                 }
             });
 
             itemView.setOnLongClickListener(v -> {
-                int position = getAdapterPosition();
-                if (position != RecyclerView.NO_POSITION && listener != null) {
-                    listener.onBookLongClick(books.get(position));
+                BookSummary book = bookAt(getBindingAdapterPosition());
+                if (book != null && listener != null) {
+                    listener.onBookLongClick(book);
                     return true;
                 }
                 return false;
             });
         }
 
-        public void bind(Book book) {
-            Context context = itemView.getContext();
-
+        public void bind(BookSummary book) {
             // название и автор
             textTitle.setText(book.getTitle());
             textAuthor.setText(book.getAuthor());
             textGenre.setText(book.getGenre());
+            bindCover(book.getId());
+            bindStatus(book);
+        }
 
-            // статус + цвет карточки
+        // Статус, цвет карточки, рейтинг, дата прочтения и прогресс (он зависит от статуса)
+        void bindStatus(BookSummary book) {
             String statusText = "";
-            int statusColor = ContextCompat.getColor(context, R.color.light_gray);
-            int cardColor = ContextCompat.getColor(context, R.color.paper_white);
+            int statusColor = colorStatusNone;
+            int cardColor = colorCardNone;
 
             if (book.getStatus() != null) {
                 switch (book.getStatus()) {
                     case Book.STATUS_PLANNED:
                         statusText = "В планах";
-                        statusColor = ContextCompat.getColor(context, android.R.color.darker_gray);
-                        cardColor = ContextCompat.getColor(context, R.color.card_planned);
+                        statusColor = colorStatus;
+                        cardColor = colorCardPlanned;
                         break;
                     case Book.STATUS_READING:
                         statusText = "Читаю";
-                        statusColor = ContextCompat.getColor(context, android.R.color.darker_gray);
-                        cardColor = ContextCompat.getColor(context, R.color.card_reading);
+                        statusColor = colorStatus;
+                        cardColor = colorCardReading;
                         break;
                     case Book.STATUS_READ:
                         statusText = "Прочитано";
-                        statusColor = ContextCompat.getColor(context, android.R.color.darker_gray);
-                        cardColor = ContextCompat.getColor(context, R.color.card_read);
+                        statusColor = colorStatus;
+                        cardColor = colorCardRead;
                         break;
                 }
             }
 
-
             textStatus.setText(statusText);
             textStatus.setTextColor(statusColor);
 
-            textStatus.setTypeface(null, Typeface.BOLD);
-
             if (cardView != null) {
                 cardView.setCardBackgroundColor(cardColor);
             }
@@ -144,7 +180,19 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder
                 ratingBar.setVisibility(View.GONE);
             }
 
-            // ПРОГРЕСС только для "Читаю"
+            // ДАТА ПРОЧТЕНИЯ только для прочитанных
+            if (book.isRead() && book.getDateRead() != null && textDateRead != null) {
+                textDateRead.setText(dateFormat.format(book.getDateRead()));
+                textDateRead.setVisibility(View.VISIBLE);
+            } else if (textDateRead != null) {
+                textDateRead.setVisibility(View.GONE);
+            }
+
+            bindProgress(book);
+        }
+
+        // ПРОГРЕСС только для "Читаю"
+        void bindProgress(BookSummary book) {
             if (Book.STATUS_READING.equals(book.getStatus())) {
                 float progress = book.getProgress();
                 if (progress > 0 && progressBar != null && textProgress != null) {
@@ -160,14 +208,31 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder
                 if (progressBar != null) progressBar.setVisibility(View.GONE);
                 if (textProgress != null) textProgress.setVisibility(View.GONE);
             }
+        }
 
-            // ДАТА ПРОЧТЕНИЯ только для прочитанных
-            if (book.isRead() && book.getDateRead() != null && textDateRead != null) {
-                textDateRead.setText(dateFormat.format(book.getDateRead()));
-                textDateRead.setVisibility(View.VISIBLE);
-            } else if (textDateRead != null) {
-                textDateRead.setVisibility(View.GONE);
+        // Из памяти — сразу; иначе с диска в фоне. Карточку могли переиспользовать
+        // под другую книгу, пока шло декодирование, — тогда результат не нужен
+        private void bindCover(int bookId) {
+            if (coverTask != null) coverTask.cancel(false);
+            coverTask = null;
+            coverBookId = bookId;
+
+            Bitmap cached = covers.getCached(bookId);
+            if (cached != null || covers.isKnownMissing(bookId)) {
+                showCover(cached);
+                return;
             }
+            showCover(null);
+            coverTask = covers.load(bookId, (id, cover) -> {
+                if (id != coverBookId) return;
+                coverTask = null;
+                showCover(cover);
+            });
+        }
+
+        private void showCover(Bitmap cover) {
+            imageCover.setImageBitmap(cover);
+            imageCover.setVisibility(cover != null ? View.VISIBLE : View.GONE);
         }
     }
 }
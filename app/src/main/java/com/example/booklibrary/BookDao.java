@@ -1,70 +1,112 @@
 package com.example.booklibrary;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.PagingSource;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
-import androidx.room.Update;
+import androidx.room.RoomWarnings;
 
+import java.util.Date;
 import java.util.List;
 
 @Dao
 public interface BookDao {
 
+    // Колонки для карточек списка — без notes и текста книги
+    String SUMMARY_COLUMNS = "id, title, author, genre, year, status, rating, dateRead, "
+            + "lastPage, totalPages, IFNULL(readerPercent, 0) AS readerPercent";
+
+    // Процент прочитанного берётся из reading_progress
+    String SUMMARY_FROM = "books LEFT JOIN reading_progress ON reading_progress.bookId = books.id";
+
+    // «Последние прочитанные» прогресс не показывают — колонки только из books, без join
+    String RECENT_COLUMNS = "id, title, author, genre, year, status, rating, dateRead";
+
+    // Запросы чтения — константами QUERY_*: BookDaoQueryPlanTest проверяет их планы
+    String QUERY_FIND_BY_CONTENT_HASH = "SELECT id FROM books WHERE contentHash = :contentHash LIMIT 1";
+
+    String QUERY_SORTED_BY_TITLE = "SELECT " + SUMMARY_COLUMNS + " FROM " + SUMMARY_FROM + " ORDER BY title ASC";
+
+    String QUERY_SORTED_BY_DATE = "SELECT " + SUMMARY_COLUMNS + " FROM " + SUMMARY_FROM + " ORDER BY dateAdded DESC";
+
+    String QUERY_BY_STATUS = "SELECT " + SUMMARY_COLUMNS + " FROM " + SUMMARY_FROM
+            + " WHERE status = :status ORDER BY title ASC";
+
+    // Сначала совпадения в названии, потом в авторе, потом остальное
+    String QUERY_SEARCH = "SELECT " + SUMMARY_COLUMNS + " FROM " + SUMMARY_FROM + " "
+            + "WHERE id IN (SELECT rowid FROM books_fts WHERE books_fts MATCH :match) "
+            + "ORDER BY CASE "
+            + "WHEN id IN (SELECT rowid FROM books_fts WHERE books_fts MATCH :titleMatch) THEN 0 "
+            + "WHEN id IN (SELECT rowid FROM books_fts WHERE books_fts MATCH :authorMatch) THEN 1 "
+            + "ELSE 2 END, title ASC";
+
+    String QUERY_BY_ID = "SELECT * FROM books WHERE id = :id LIMIT 1";
+
+    String QUERY_RECENT_READ = "SELECT " + RECENT_COLUMNS + " FROM books"
+            + " WHERE status = 'read' ORDER BY dateRead DESC LIMIT :limit";
+
+    String QUERY_BY_FTS_MATCH = "SELECT " + SUMMARY_COLUMNS + " FROM " + SUMMARY_FROM + " "
+            + "WHERE id IN (SELECT rowid FROM books_fts WHERE books_fts MATCH :match) ORDER BY title";
+
     // CRUD
     @Insert
     long insert(Book book);
 
-    @Update
-    int update(Book book);
+    // Пачка книг одним INSERT-выражением на строку внутри одной транзакции (импорт папки)
+    @Insert
+    long[] insertAll(List<Book> books);
+
+    // Только поля, которые правит пользователь. Текст книги (blockCount, sourceUri,
+    // contentHash, textVersion) пишут свои запросы, и отложенная правка их не откатит
+    @Query("UPDATE books SET title = :title, author = :author, genre = :genre, year = :year, "
+            + "status = :status, notes = :notes, rating = :rating, dateRead = :dateRead "
+            + "WHERE id = :id")
+    void updateMetadata(int id, String title, String author, String genre, int year,
+                        String status, String notes, float rating, Date dateRead);
 
     @Delete
     int delete(Book book);
 
-    // Списки (LiveData)
-    @Query("SELECT * FROM books ORDER BY title ASC")
-    LiveData<List<Book>> getAllBooksSortedByTitle();
-
-    @Query("SELECT * FROM books ORDER BY dateAdded DESC")
-    LiveData<List<Book>> getAllBooksSortedByDate();
-
-    @Query("SELECT * FROM books WHERE status = :status ORDER BY title ASC")
-    LiveData<List<Book>> getBooksByStatus(String status);
-
-    // Поиск по нескольким полям
-    @Query("SELECT * FROM books WHERE author LIKE :query OR title LIKE :query OR genre LIKE :query ORDER BY title ASC")
-    LiveData<List<Book>> searchBooks(String query);
+    // Текст книги подгружен после импорта: остальные поля строки не трогаем
+    @Query("UPDATE books SET blockCount = :blockCount, sourceUri = NULL, contentHash = :contentHash "
+            + "WHERE id = :id")
+    void setTextLoaded(int id, int blockCount, String contentHash);
 
-    // Одна книга
-    @Query("SELECT * FROM books WHERE id = :id LIMIT 1")
-    LiveData<Book> getBookById(int id);
-
-    // Статистика (LiveData)
-    @Query("SELECT COUNT(*) FROM books WHERE status = 'read' AND strftime('%Y', dateRead / 1000, 'unixepoch') = :year")
-    LiveData<Integer> getReadBooksCountForYear(String year);
+    @Query("UPDATE books SET textVersion = :textVersion WHERE id = :id")
+    void setTextVersion(int id, long textVersion);
 
-    @Query("SELECT COUNT(*) FROM books WHERE status = 'read'")
-    LiveData<Integer> getTotalReadBooks();
+    // Книга с тем же текстом (по индексу contentHash); null — такой нет
+    @Query(QUERY_FIND_BY_CONTENT_HASH)
+    Integer findIdByContentHash(String contentHash);
 
-    @Query("SELECT COUNT(*) FROM books WHERE status = 'reading'")
-    LiveData<Integer> getTotalReadingBooks();
+    // Списки — постранично (PagingSource): в память попадают только страницы у видимой части,
+    // при изменении таблиц Room сам инвалидирует источник
+    @Query(QUERY_SORTED_BY_TITLE)
+    PagingSource<Integer, BookSummary> getAllBooksSortedByTitle();
 
-    @Query("SELECT COUNT(*) FROM books WHERE status = 'planned'")
-    LiveData<Integer> getTotalPlannedBooks();
+    @Query(QUERY_SORTED_BY_DATE)
+    PagingSource<Integer, BookSummary> getAllBooksSortedByDate();
 
-    @Query("SELECT AVG(rating) FROM books WHERE status = 'read' AND rating > 0")
-    LiveData<Float> getAverageRating();
+    @Query(QUERY_BY_STATUS)
+    PagingSource<Integer, BookSummary> getBooksByStatus(String status);
 
-    @Query("SELECT COUNT(*) FROM books")
-    LiveData<Integer> getTotalBooks();
+    // Поиск по нескольким полям через books_fts (выражения MATCH строит FtsQuery)
+    @Query(QUERY_SEARCH)
+    PagingSource<Integer, BookSummary> searchBooks(String match, String titleMatch, String authorMatch);
 
-    @Query("SELECT * FROM books WHERE status = 'read' ORDER BY dateRead DESC LIMIT :limit")
-    LiveData<List<Book>> getRecentReadBooks(int limit);
+    // Одна книга
+    @Query(QUERY_BY_ID)
+    LiveData<Book> getBookById(int id);
 
-    @Query("SELECT * FROM books WHERE author LIKE '%' || :author || '%' ORDER BY title")
-    LiveData<List<Book>> getBooksByAuthorLike(String author);
+    // Статистика — см. LibraryStatsDao; здесь только последние прочитанные
+    // Поля прогресса BookSummary остаются нулями — об этом и предупреждение Room
+    @SuppressWarnings(RoomWarnings.QUERY_MISMATCH)
+    @Query(QUERY_RECENT_READ)
+    LiveData<List<BookSummary>> getRecentReadBooks(int limit);
 
-    @Query("SELECT * FROM books WHERE genre LIKE '%' || :genre || '%' ORDER BY title")
-    LiveData<List<Book>> getBooksByGenreLike(String genre);
+    // match — выражение для books_fts с фильтром по колонке ("author:слово*")
+    @Query(QUERY_BY_FTS_MATCH)
+    PagingSource<Integer, BookSummary> getBooksByFtsMatch(String match);
 }
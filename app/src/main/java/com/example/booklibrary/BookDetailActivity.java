@@ -2,13 +2,13 @@ package com.example.booklibrary;
 
 import android.content.Context;
 import android.content.Intent;
-import android.net.Uri;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.RadioGroup;
 import android.widget.RatingBar;
 import android.widget.Toast;
@@ -26,6 +26,8 @@ public class BookDetailActivity extends BaseActivity {
     private RatingBar ratingBar;
     private Button buttonSave, buttonDelete;
     private Book currentBook;
+    // Текст из FB2 — во временных файлах, отдельно от Book; сохраняется вместе с ним
+    private BookTextStore.Writer pendingText;
 
     private static final int MAX_TITLE_LEN = 50;
     private static final int MAX_AUTHOR_LEN = 50;
@@ -33,6 +35,9 @@ public class BookDetailActivity extends BaseActivity {
 
 
     private Button buttonRead;
+    private Button buttonLoadFb2;
+    private View layoutFb2Progress;
+    private ProgressBar progressFb2;
     private boolean isNewBook = true;
 
     public static void start(Context context, int bookId) {
@@ -48,8 +53,8 @@ public class BookDetailActivity extends BaseActivity {
 
         setupViews();
         setupGenreDropdown();
-        setupLoadFb2Button();
         viewModel = new ViewModelProvider(this).get(BookViewModel.class);
+        setupLoadFb2Button();
 
         int bookId = getIntent().getIntExtra("book_id", -1);
         if (bookId != -1) {
@@ -75,16 +80,24 @@ public class BookDetailActivity extends BaseActivity {
         buttonSave = findViewById(R.id.buttonSave);
         buttonDelete = findViewById(R.id.buttonDelete);
         buttonRead = findViewById(R.id.buttonRead);
+        buttonLoadFb2 = findViewById(R.id.buttonLoadFb2);
+        layoutFb2Progress = findViewById(R.id.layoutFb2Progress);
+        progressFb2 = findViewById(R.id.progressFb2);
     }
 
     private void setupLoadFb2Button() {
-        findViewById(R.id.buttonLoadFb2).setOnClickListener(v -> {
+        buttonLoadFb2.setOnClickListener(v -> {
             Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
             intent.setType("*/*");
-            String[] mimeTypes = new String[]{"application/octet-stream", "text/xml"};
+            String[] mimeTypes = new String[]{"application/octet-stream", "text/xml",
+                    "application/zip", "application/x-zip-compressed"};
             intent.putExtra(Intent.EXTRA_MIME_TYPES, mimeTypes);
             startActivityForResult(intent, 100);
         });
+        findViewById(R.id.buttonCancelFb2).setOnClickListener(v -> viewModel.cancelFb2Import());
+
+        viewModel.getFb2Progress().observe(this, this::showFb2Progress);
+        viewModel.getFb2Result().observe(this, this::onFb2Loaded);
     }
 
     private void setupGenreDropdown() {
@@ -157,8 +170,7 @@ public class BookDetailActivity extends BaseActivity {
         }
         updateRatingVisibility();
 
-        if (currentBook != null && currentBook.getContent() != null
-                && !currentBook.getContent().trim().isEmpty()) {
+        if (currentBook.canOpenInReader()) {
             buttonRead.setVisibility(View.VISIBLE);
         }
     }
@@ -259,69 +271,69 @@ public class BookDetailActivity extends BaseActivity {
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == 100 && resultCode == RESULT_OK && data != null) {
-            Uri uri = data.getData();
-            Fb2Parser parser = new Fb2Parser(this);
-            ParsedBook parsed = parser.parseBook(uri);
-
-            if (parsed != null) {
-                if (currentBook == null) {
-                    currentBook = new Book();
-                    isNewBook = true;
-                }
-
-                if (parsed.title != null) currentBook.setTitle(parsed.title);
-                if (parsed.author != null) currentBook.setAuthor(parsed.author);
-                String mappedGenre = mapParsedGenreToKnown(parsed.genre);
-                if (mappedGenre != null) {
-                    currentBook.setGenre(mappedGenre);
-                }
+        if (requestCode == 100 && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            discardPendingText();
+            // разбор — в фоне, итог придёт в onFb2Loaded
+            viewModel.importFb2(data.getData());
+        }
+    }
 
+    private void showFb2Progress(Fb2Import.Progress p) {
+        layoutFb2Progress.setVisibility(p != null ? View.VISIBLE : View.GONE);
+        buttonLoadFb2.setEnabled(p == null);
+        if (p == null) return;
 
-                int year = 0;
-                if (parsed.dateString != null && parsed.dateString.length() >= 4) {
-                    try {
-                        year = Integer.parseInt(parsed.dateString.substring(0, 4));
-                    } catch (NumberFormatException ignored) { }
-                }
-                currentBook.setYear(year);
+        int percent = p.getPercent();
+        progressFb2.setIndeterminate(percent < 0);
+        if (percent >= 0) progressFb2.setProgress(percent);
+    }
 
-                currentBook.setContent(parsed.fullText);
+    private void onFb2Loaded(Fb2Import.Result r) {
+        if (r == null) return;
+        viewModel.clearFb2Import();
 
-                populateFields();
-                Toast.makeText(this, "Книга загружена из FB2", Toast.LENGTH_SHORT).show();
+        if (r.cancelled) {
+            Toast.makeText(this, "Загрузка отменена", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (!r.isSuccess()) {
+            Toast.makeText(this, r.error != null ? r.error : "Не удалось распознать FB2 файл",
+                    Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-                // сразу сохраняем и закрываем карточку
-                saveBookAndClose();
-            } else {
-                Toast.makeText(this, "Не удалось распознать FB2 файл", Toast.LENGTH_SHORT).show();
-            }
+        // тот же текст уже в библиотеке (перезагрузка текста своей книги — не дубликат)
+        if (r.duplicateOf != 0 && (currentBook == null || currentBook.getId() != r.duplicateOf)) {
+            r.text.close();
+            Toast.makeText(this, "Эта книга уже есть в библиотеке", Toast.LENGTH_SHORT).show();
+            return;
         }
-    }
 
-    private String mapParsedGenreToKnown(String parsedGenre) {
-        if (parsedGenre == null) return null;
+        ParsedBook parsed = r.book;
+        pendingText = r.text;
+        if (currentBook == null) {
+            currentBook = new Book();
+            isNewBook = true;
+        }
 
-        String normalized = parsedGenre.trim().toLowerCase();
+        if (parsed.title != null) currentBook.setTitle(parsed.title);
+        if (parsed.author != null) currentBook.setAuthor(parsed.author);
+        String mappedGenre = new Fb2Genres(getResources()).mapToKnown(parsed.genre);
+        if (mappedGenre != null) {
+            currentBook.setGenre(mappedGenre);
+        }
 
-        String[] genresEn = getResources().getStringArray(R.array.book_genres_en);
-        String[] genresRu = getResources().getStringArray(R.array.book_genres_ru);
 
-        for (int i = 0; i < genresEn.length; i++) {
-            String en = genresEn[i].toLowerCase();
-            String ru = genresRu[i].toLowerCase();
+        currentBook.setYear(parsed.getYear());
+        currentBook.setContentHash(parsed.contentHash);
 
-            if (normalized.contains(en) || en.contains(normalized)
-                    || normalized.contains(ru) || ru.contains(normalized)) {
-                return genresRu[i];  // возвращаем русский вариант для UI
-            }
-        }
+        populateFields();
+        Toast.makeText(this, "Книга загружена из FB2", Toast.LENGTH_SHORT).show();
 
-        return "Другое";
+        // сразу сохраняем и закрываем карточку
+        saveBookAndClose();
     }
 
-
-
     private void saveBookAndClose() {
         // та же логика, что и в saveBook(), но в конце finish()
 
@@ -360,15 +372,30 @@ public class BookDetailActivity extends BaseActivity {
 
         currentBook.setRating(ratingBar.getRating());
 
+        // writer теперь закроет репозиторий
         if (isNewBook) {
-            viewModel.insert(currentBook);
+            viewModel.insert(currentBook, pendingText);
         } else {
-            viewModel.update(currentBook);
+            viewModel.update(currentBook, pendingText);
         }
+        pendingText = null;
 
         // закрываем карточку и возвращаемся к списку
         setResult(RESULT_OK);
         finish();
     }
 
+    private void discardPendingText() {
+        if (pendingText != null) {
+            pendingText.close();
+            pendingText = null;
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        // текст так и не сохранили — временные файлы не нужны
+        discardPendingText();
+        super.onDestroy();
+    }
 }
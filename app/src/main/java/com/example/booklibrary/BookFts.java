@@ -0,0 +1,41 @@
+package com.example.booklibrary;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Полнотекстовый индекс по метаданным книг. Текст берётся из books
+ * (external content), Room сам держит индекс в синхронизации триггерами.
+ * unicode61 — чтобы поиск по кириллице не зависел от регистра.
+ */
+@Fts4(contentEntity = Book.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "books_fts")
+public class BookFts {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowid;
+
+    private String title;
+    private String author;
+    private String genre;
+    private String notes;
+
+    public int getRowid() { return rowid; }
+    public void setRowid(int rowid) { this.rowid = rowid; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getAuthor() { return author; }
+    public void setAuthor(String author) { this.author = author; }
+
+    public String getGenre() { return genre; }
+    public void setGenre(String genre) { this.genre = genre; }
+
+    public String getNotes() { return notes; }
+    public void setNotes(String notes) { this.notes = notes; }
+}
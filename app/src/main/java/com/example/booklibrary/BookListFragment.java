@@ -12,12 +12,13 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.widget.SearchView;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.LoadState;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.tabs.TabLayout;
 
-import java.util.List;
+import kotlin.Unit;
 
 public class BookListFragment extends Fragment implements BookAdapter.OnBookClickListener {
 
@@ -63,9 +64,15 @@ public class BookListFragment extends Fragment implements BookAdapter.OnBookClic
     private void setupViewModel() {
         viewModel = new ViewModelProvider(requireActivity()).get(BookViewModel.class);
 
-        viewModel.getAllBooks().observe(getViewLifecycleOwner(), books -> {
-            adapter.setBooks(books);
-            updateEmptyState(books);
+        viewModel.getAllBooks().observe(getViewLifecycleOwner(),
+                books -> adapter.submitData(getViewLifecycleOwner().getLifecycle(), books));
+
+        // пусто или нет — известно, когда загрузилась первая страница
+        adapter.addLoadStateListener(states -> {
+            if (states.getRefresh() instanceof LoadState.NotLoading) {
+                updateEmptyState(adapter.getItemCount() == 0);
+            }
+            return Unit.INSTANCE;
         });
     }
 
@@ -160,10 +167,11 @@ public class BookListFragment extends Fragment implements BookAdapter.OnBookClic
         tabLayout.addOnTabSelectedListener(tabSelectedListener);
     }
 
-    private void updateEmptyState(List<Book> books) {
-        View emptyView = requireView().findViewById(R.id.textNoBooks);
+    private void updateEmptyState(boolean empty) {
+        if (getView() == null) return;
+        View emptyView = getView().findViewById(R.id.textNoBooks);
 
-        if (books == null || books.isEmpty()) {
+        if (empty) {
             emptyView.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
@@ -173,12 +181,12 @@ public class BookListFragment extends Fragment implements BookAdapter.OnBookClic
     }
 
     @Override
-    public void onBookClick(Book book) {
+    public void onBookClick(BookSummary book) {
         BookDetailActivity.start(requireContext(), book.getId());
     }
 
     @Override
-    public void onBookLongClick(Book book) {
+    public void onBookLongClick(BookSummary book) {
         Toast.makeText(getContext(), book.getTitle(), Toast.LENGTH_SHORT).show();
     }
 }
@@ -1,21 +1,127 @@
 package com.example.booklibrary;
 
 import android.app.Application;
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
 
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+
+import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ProcessLifecycleOwner;
+import androidx.lifecycle.Transformations;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+import androidx.paging.PagingSource;
+
+import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import kotlin.jvm.functions.Function0;
+import kotlinx.coroutines.CoroutineScope;
 
 public class BookRepository {
 
+    private static final String TAG = "BookRepository";
+
+    private static final int FTS_INSERT_BATCH = 500;
+    private static final int TEXT_SEARCH_PAGE_SIZE = 30;
+    private static final int BOOK_LIST_PAGE_SIZE = 40;
+    private static final int OPEN_TEXT_CACHE = 8;
+
+    private final AppDatabase db;
     private final BookDao bookDao;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final BlockFtsDao blockFtsDao;
+    private final LibraryStatsDao libraryStatsDao;
+    private final ReadingProgressDao progressDao;
+    private final BookTextStore textStore;
+    private final ContentResolver resolver;
+    private final CoverCache covers;
+    private static volatile BookRepository instance;
+
+    // Открытые тексты по id книги вместе с Book.textVersion, под которой их открыли.
+    // Сам индекс блоков — на диске (books/<id>.idx), пишется один раз при импорте;
+    // здесь — отображения в память, чтобы повторное открытие их не пересоздавало.
+    // commitAndIndex и delete запись сбрасывают
+    private final LruCache<Integer, OpenText> openTexts = new LruCache<>(OPEN_TEXT_CACHE);
+    private final AtomicLong lastTextVersion = new AtomicLong();
 
-    public BookRepository(Application application) {
-        AppDatabase db = AppDatabase.getInstance(application);
+    private static final class OpenText {
+        final long version;
+        final BookText text;
+
+        OpenText(long version, BookText text) {
+            this.version = version;
+            this.text = text;
+        }
+    }
+
+    // Все записи — в одном потоке: и сразу, и отложенные через writes
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final WriteBehindQueue writes;
+
+    // Один на процесс: очередь отложенных записей общая для всех экранов
+    public static BookRepository getInstance(Application application) {
+        if (instance == null) {
+            synchronized (BookRepository.class) {
+                if (instance == null) {
+                    instance = new BookRepository(application);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private BookRepository(Application application) {
+        db = AppDatabase.getInstance(application);
         bookDao = db.bookDao();
+        blockFtsDao = db.blockFtsDao();
+        libraryStatsDao = db.libraryStatsDao();
+        progressDao = db.readingProgressDao();
+        textStore = new BookTextStore(application);
+        resolver = application.getContentResolver();
+        covers = CoverCache.getInstance(application);
+        writes = new WriteBehindQueue(executor, db::runInTransaction);
+
+        // Приложение ушло в фон — записываем всё, что накопилось
+        new Handler(Looper.getMainLooper()).post(() ->
+                ProcessLifecycleOwner.get().getLifecycle().addObserver(new DefaultLifecycleObserver() {
+                    @Override
+                    public void onStop(@NonNull LifecycleOwner owner) {
+                        flush();
+                    }
+                }));
+    }
+
+    private static String bookKey(int bookId) {
+        return "book:" + bookId;
+    }
+
+    private static String progressKey(int bookId) {
+        return "progress:" + bookId;
     }
 
     // Запись в фоне
@@ -23,79 +129,351 @@ public class BookRepository {
         executor.execute(() -> bookDao.insert(book));
     }
 
+    // Новый текст книги пишется во временные файлы (например, прямо из Fb2Parser)
+    // и передаётся в insert/update/insertAll — дальше ими владеет репозиторий
+    public BookTextStore.Writer newTextWriter() throws IOException {
+        return textStore.newWriter();
+    }
+
+    // text == null — книга без текста. Файлы текста становятся файлами книги,
+    // когда известен её id; книга и её полнотекстовый индекс — одной транзакцией
+    public void insert(Book book, BookTextStore.Writer text) {
+        if (text == null) {
+            insert(book);
+            return;
+        }
+        executor.execute(() -> {
+            try (BookTextStore.Writer writer = text) {
+                book.setBlockCount(writer.getBlockCount());
+                runWithTexts(Collections.singletonList(writer), () -> {
+                    int id = (int) bookDao.insert(book);
+                    return commitAndIndex(id, writer);
+                });
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Не удалось сохранить книгу с текстом", e);
+            }
+        });
+    }
+
+    // Отложенная запись: несколько правок одной книги подряд сливаются в одну
     public void update(Book book) {
-        executor.execute(() -> bookDao.update(book));
+        writes.put(bookKey(book.getId()), () -> updateMetadata(book));
+    }
+
+    private void updateMetadata(Book book) {
+        bookDao.updateMetadata(book.getId(), book.getTitle(), book.getAuthor(), book.getGenre(),
+                book.getYear(), book.getStatus(), book.getNotes(), book.getRating(), book.getDateRead());
+    }
+
+    // text == null — текст книги не трогаем
+    public void update(Book book, BookTextStore.Writer text) {
+        if (text == null) {
+            update(book);
+            return;
+        }
+        // эта запись новее ожидающей в очереди
+        writes.remove(bookKey(book.getId()));
+        executor.execute(() -> {
+            try (BookTextStore.Writer writer = text) {
+                book.setBlockCount(writer.getBlockCount());
+                runWithTexts(Collections.singletonList(writer), () -> {
+                    updateMetadata(book);
+                    bookDao.setTextLoaded(book.getId(), writer.getBlockCount(), book.getContentHash());
+                    return commitAndIndex(book.getId(), writer);
+                });
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Не удалось сохранить текст книги " + book.getId(), e);
+            }
+        });
+    }
+
+    // Пачка книг из импорта: книги и их полнотекстовый индекс попадают в базу
+    // одной транзакцией на всю пачку. Синхронно — вызывать из фонового потока.
+    // texts.get(i) == null — книга без текста (например, только метаданные).
+    // Возвращает id вставленных книг; writers закрываются в любом случае
+    public long[] insertAll(List<Book> books, List<BookTextStore.Writer> texts) {
+        try {
+            for (int i = 0; i < books.size(); i++) {
+                BookTextStore.Writer text = texts.get(i);
+                books.get(i).setBlockCount(text != null ? text.getBlockCount() : 0);
+            }
+            return runWithTexts(texts, () -> {
+                long[] ids = bookDao.insertAll(books);
+                for (int i = 0; i < ids.length; i++) {
+                    if (texts.get(i) == null) continue;
+                    commitAndIndex((int) ids[i], texts.get(i));
+                }
+                return ids;
+            });
+        } finally {
+            for (BookTextStore.Writer writer : texts) {
+                if (writer != null) writer.close();
+            }
+        }
+    }
+
+    // Текст книги, импортированной без него, — из её sourceUri: разбор в вызывающем
+    // потоке, запись в базу — в потоке записи. Блокирующий вызов, только из фонового
+    // потока. null — у книги нет источника; тот же текст уже у другой книги —
+    // DuplicateBookException, текст не сохраняется
+    public BookText loadTextFromSource(Book book) throws IOException {
+        String source = book.getSourceUri();
+        if (source == null) return null;
+
+        Uri uri = Uri.parse(source);
+        String entry = uri.getFragment();  // запись архива
+        Uri file = uri.buildUpon().fragment(null).build();
+
+        try (InputStream in = openSource(file);
+             BookTextStore.Writer writer = textStore.newWriter()) {
+
+            InputStream fb2 = new BufferedInputStream(in, 64 * 1024);
+            if (entry != null) {
+                fb2 = Fb2Archive.openEntry(fb2, entry);
+                if (fb2 == null) throw new IOException("В архиве нет " + entry);
+            }
+            ParsedBook parsed = Fb2Parser.parse(fb2, writer::writeText, writer);
+
+            int bookId = book.getId();
+            long version = executor.submit(() -> {
+                // На том же потоке записи, что и вставки: между проверкой и сохранением
+                // текста книга с тем же хэшем появиться не может
+                int duplicateOf = findBookIdByContentHash(parsed.contentHash);
+                if (duplicateOf != 0 && duplicateOf != bookId) throw new DuplicateBookException(duplicateOf);
+                return runWithTexts(Collections.singletonList(writer), () -> {
+                    bookDao.setTextLoaded(bookId, writer.getBlockCount(), parsed.contentHash);
+                    return commitAndIndex(bookId, writer);
+                });
+            }).get();
+            return openText(bookId, version);
+        } catch (XmlPullParserException | Fb2FormatException e) {
+            throw new IOException("Ошибка парсинга FB2: " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DuplicateBookException) throw (DuplicateBookException) e.getCause();
+            throw new IOException("Не удалось сохранить текст книги", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    // Сообщения исключений показывает читалка — они должны быть понятны читателю
+    private InputStream openSource(Uri file) throws IOException {
+        try {
+            InputStream in = resolver.openInputStream(file);
+            if (in == null) throw new IOException("Не удаётся открыть файл книги");
+            return in;
+        } catch (FileNotFoundException e) {
+            throw new IOException("Файл книги не найден — его переместили или удалили", e);
+        } catch (SecurityException e) {
+            throw new IOException("Нет доступа к файлу книги — снова выберите папку при импорте", e);
+        }
+    }
+
+    // Книга с тем же текстом (ParsedBook.contentHash), поиск по индексу; 0 — такой нет.
+    // Синхронно — вызывать из фонового потока
+    public int findBookIdByContentHash(String contentHash) {
+        if (contentHash == null) return 0;
+        Integer id = bookDao.findIdByContentHash(contentHash);
+        return id != null ? id : 0;
+    }
+
+    // Транзакция, внутри которой файлы текста подменяются (commitAndIndex). Откатилась —
+    // writers возвращают книгам прежние файлы, и база с файлами не расходятся
+    private <T> T runWithTexts(List<BookTextStore.Writer> writers, Callable<T> body) {
+        try {
+            return db.runInTransaction(body);
+        } catch (RuntimeException e) {
+            for (BookTextStore.Writer writer : writers) {
+                if (writer != null) writer.rollback();
+            }
+            throw e;
+        }
+    }
+
+    // Файлы текста становятся файлами книги, индекс строится по ним же — блок за блоком
+    // через mmap, весь текст в память не читается. У книги — новая textVersion (её и
+    // возвращает): по ней читалка понимает, что текст сменился. Только внутри runWithTexts:
+    // прежние файлы книги до конца транзакции лежат в резервных копиях writer'а
+    private long commitAndIndex(int bookId, BookTextStore.Writer writer) {
+        try {
+            writer.commit(bookId);
+            openTexts.remove(bookId);
+            covers.invalidate(bookId);
+            long version = nextTextVersion();
+            bookDao.setTextVersion(bookId, version);
+            indexBlocks(bookId, textStore.open(bookId));
+            return version;
+        } catch (IOException e) {
+            // commit() сам вернул прежние файлы; остальное вернёт rollback() в runWithTexts
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Время записи, но строго возрастающее: версия не повторится, даже если часы перевели назад
+    private long nextTextVersion() {
+        long now = System.currentTimeMillis();
+        return lastTextVersion.updateAndGet(last -> Math.max(now, last + 1));
+    }
+
+    // Перестраивает полнотекстовый индекс текста книги; вызывать внутри транзакции
+    private void indexBlocks(int bookId, BookText text) {
+        blockFtsDao.deleteRange(BlockFts.firstRowid(bookId), BlockFts.lastRowid(bookId));
+        if (text == null) return;
+
+        List<BlockFts> batch = new ArrayList<>(FTS_INSERT_BATCH);
+        for (int i = 0; i < text.getBlockCount(); i++) {
+            batch.add(new BlockFts(BlockFts.rowid(bookId, i), text.getBlock(i)));
+            if (batch.size() == FTS_INSERT_BATCH) {
+                blockFtsDao.insert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) blockFtsDao.insert(batch);
     }
 
     public void delete(Book book) {
-        executor.execute(() -> bookDao.delete(book));
+        writes.remove(bookKey(book.getId()));
+        writes.remove(progressKey(book.getId()));
+        executor.execute(() -> {
+            db.runInTransaction(() -> {
+                bookDao.delete(book);
+                blockFtsDao.deleteRange(BlockFts.firstRowid(book.getId()), BlockFts.lastRowid(book.getId()));
+            });
+            openTexts.remove(book.getId());
+            textStore.delete(book.getId());
+        });
     }
 
-    // Чтение: просто отдаём LiveData из DAO
+    // Списки книг — постранично из PagingSource DAO. Кэшировать (cachedIn) — на стороне
+    // ViewModel: она переключает источники и держит кэш только текущего
+
+    public LiveData<PagingData<BookSummary>> getAllBooksSortedByTitle() {
+        return pageBooks(bookDao::getAllBooksSortedByTitle);
+    }
 
-    public LiveData<List<Book>> getAllBooksSortedByTitle() {
-        return bookDao.getAllBooksSortedByTitle();
+    public LiveData<PagingData<BookSummary>> getAllBooksSortedByDate() {
+        return pageBooks(bookDao::getAllBooksSortedByDate);
     }
 
-    public LiveData<List<Book>> getAllBooksSortedByDate() {
-        return bookDao.getAllBooksSortedByDate();
+    public LiveData<PagingData<BookSummary>> getBooksByStatus(String status) {
+        return pageBooks(() -> bookDao.getBooksByStatus(status));
     }
 
-    public LiveData<List<Book>> getBooksByStatus(String status) {
-        return bookDao.getBooksByStatus(status);
+    // Поиск идёт по books_fts: префиксы слов, без полного прохода по таблице
+
+    public LiveData<PagingData<BookSummary>> getBooksByAuthor(String author) {
+        String match = FtsQuery.prefix(author, "author");
+        if (match == null) return new MutableLiveData<>(PagingData.empty());
+        return pageBooks(() -> bookDao.getBooksByFtsMatch(match));
     }
 
-    public LiveData<List<Book>> getBooksByAuthorLike(String author) {
-        String q = "%" + author + "%";
-        return bookDao.getBooksByAuthorLike(q);
+    public LiveData<PagingData<BookSummary>> getBooksByGenre(String genre) {
+        String match = FtsQuery.prefix(genre, "genre");
+        if (match == null) return new MutableLiveData<>(PagingData.empty());
+        return pageBooks(() -> bookDao.getBooksByFtsMatch(match));
     }
 
-    public LiveData<List<Book>> getBooksByGenreLike(String genre) {
-        String q = "%" + genre + "%";
-        return bookDao.getBooksByGenreLike(q);
+    public LiveData<PagingData<BookSummary>> searchBooks(String query) {
+        String match = FtsQuery.prefix(query);
+        if (match == null) return new MutableLiveData<>(PagingData.empty());
+        String titleMatch = FtsQuery.prefix(query, "title");
+        String authorMatch = FtsQuery.prefix(query, "author");
+        return pageBooks(() -> bookDao.searchBooks(match, titleMatch, authorMatch));
     }
 
-    public LiveData<List<Book>> searchBooks(String query) {
-        String wildcardQuery = "%" + query + "%";
-        return bookDao.searchBooks(wildcardQuery);
+    // Первая загрузка — BOOK_LIST_PAGE_SIZE * 3 строк (по умолчанию Paging), дальше — по мере прокрутки;
+    // без плейсхолдеров адаптеру не приходят null-элементы
+    private static LiveData<PagingData<BookSummary>> pageBooks(
+            Function0<PagingSource<Integer, BookSummary>> source) {
+        Pager<Integer, BookSummary> pager = new Pager<>(
+                new PagingConfig(BOOK_LIST_PAGE_SIZE, BOOK_LIST_PAGE_SIZE, false),
+                source);
+        return PagingLiveData.getLiveData(pager);
     }
 
     public LiveData<Book> getBookById(int id) {
         return bookDao.getBookById(id);
     }
 
-    // Статистика
+    // Текст книги: отображает файлы в память, сам текст не читает.
+    // Блокирующий вызов — только из фонового потока; null — текста нет
+    // textVersion — из строки книги (Book.getTextVersion): та же версия — тот же объект
+    // из кэша, без обращения к файлам
+    public BookText openText(int bookId, long textVersion) throws IOException {
+        OpenText cached = openTexts.get(bookId);
+        if (cached != null && cached.version == textVersion) return cached.text;
+
+        BookText text = textStore.open(bookId);
+        if (text != null) openTexts.put(bookId, new OpenText(textVersion, text));
+        return text;
+    }
 
-    public LiveData<Integer> getReadBooksCountForYear(String year) {
-        return bookDao.getReadBooksCountForYear(year);
+    // Файл карты страниц постраничного режима; при новом тексте или удалении книги стирается
+    public File pageMapFile(int bookId, long textVersion, String layoutKey) {
+        return textStore.pageMapFile(bookId, textVersion, layoutKey);
     }
 
-    public LiveData<Integer> getTotalReadBooks() {
-        return bookDao.getTotalReadBooks();
+    // Позиция читалки: пишется только строка reading_progress, books не трогаем
+    // Сохранения позиции при каждой паузе читалки сливаются по книге
+    public void saveProgress(ReadingProgress progress) {
+        writes.put(progressKey(progress.getBookId()), () -> progressDao.upsert(progress));
     }
 
-    public LiveData<Integer> getTotalReadingBooks() {
-        return bookDao.getTotalReadingBooks();
+    // Синхронно — вызывать не из UI-потока; null, если книгу ещё не открывали.
+    // Сначала дописываем очередь, иначе можно прочитать позицию до последнего сохранения
+    public ReadingProgress loadProgress(int bookId) {
+        try {
+            writes.flushAndWait();
+        } catch (IllegalStateException e) {
+            // ошибка уже в логе очереди, упавшие записи в ней же — читаем то, что есть в базе
+        }
+        return progressDao.getProgress(bookId);
     }
 
-    public LiveData<Integer> getTotalPlannedBooks() {
-        return bookDao.getTotalPlannedBooks();
+    // Поиск по тексту всех книг, постранично. null — в запросе нет ни одного слова
+    public LiveData<PagingData<BlockHit>> searchText(String query, CoroutineScope scope) {
+        String match = FtsQuery.prefix(query);
+        if (match == null) return null;
+
+        Pager<Integer, BlockHit> pager = new Pager<>(
+                new PagingConfig(TEXT_SEARCH_PAGE_SIZE),
+                () -> blockFtsDao.search(match));
+        return PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager), scope);
     }
 
-    public LiveData<Float> getAverageRating() {
-        return bookDao.getAverageRating();
+    // Статистика
+
+    // Одна строка на значение, а не агрегаты по всей books
+    public LiveData<LibraryStats> getLibraryStats() {
+        return Transformations.map(libraryStatsDao.getAll(), LibraryStats::new);
     }
 
-    public LiveData<Integer> getTotalBooks() {
-        return bookDao.getTotalBooks();
+    public LiveData<ReadingHistory> getReadingHistory() {
+        return Transformations.map(libraryStatsDao.getReadMonths(), ReadingHistory::new);
     }
 
-    public LiveData<List<Book>> getRecentReadBooks(int limit) {
+    public LiveData<List<BookSummary>> getRecentReadBooks(int limit) {
         return bookDao.getRecentReadBooks(limit);
     }
 
+    // Записать накопленные изменения, не дожидаясь таймера очереди
+    public void flush() {
+        writes.flush();
+    }
+
+    // Метрики очереди отложенных записей (размер пачек, задержка сброса)
+    public WriteBehindQueue.Stats getWriteStats() {
+        return writes.getStats();
+    }
+
+    // Дописывает очередь и останавливает поток записи; после этого репозиторий не использовать
     public void shutdown() {
+        writes.flush();
         executor.shutdown();
+        synchronized (BookRepository.class) {
+            if (instance == this) instance = null;
+        }
     }
 
 }
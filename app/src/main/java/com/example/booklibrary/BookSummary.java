@@ -0,0 +1,94 @@
+package com.example.booklibrary;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Лёгкая проекция книги для списков (BookAdapter, RecentBooksAdapter):
+ * только то, что реально показывается на карточке, без заметок и текста.
+ */
+public class BookSummary {
+
+    private int id;
+    private String title;
+    private String author;
+    private String genre;
+    private int year;
+    private String status;
+    private float rating;
+    private Date dateRead;
+    private int lastPage;
+    private int totalPages;
+    private int readerPercent;
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public String getAuthor() { return author; }
+    public void setAuthor(String author) { this.author = author; }
+
+    public String getGenre() { return genre != null ? genre : ""; }
+    public void setGenre(String genre) { this.genre = genre; }
+
+    public int getYear() { return year; }
+    public void setYear(int year) { this.year = year; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public float getRating() { return rating; }
+    public void setRating(float rating) { this.rating = rating; }
+
+    public Date getDateRead() { return dateRead; }
+    public void setDateRead(Date dateRead) { this.dateRead = dateRead; }
+
+    public int getLastPage() { return lastPage; }
+    public void setLastPage(int lastPage) { this.lastPage = lastPage; }
+
+    public int getTotalPages() { return totalPages; }
+    public void setTotalPages(int totalPages) { this.totalPages = totalPages; }
+
+    public int getReaderPercent() { return readerPercent; }
+    public void setReaderPercent(int readerPercent) { this.readerPercent = readerPercent; }
+
+    // readerPercent приходит из reading_progress (LEFT JOIN, 0 — если книгу не открывали)
+    public float getProgress() {
+        if (Book.STATUS_READING.equals(status)) {
+            return (float) readerPercent;
+        }
+
+        if (totalPages == 0 && lastPage == 0) return 0f;
+        return (float) (lastPage + 1) / (float) totalPages * 100f;
+    }
+
+    public boolean isRead() {
+        return Book.STATUS_READ.equals(status);
+    }
+
+    // Для DiffUtil списков: одна и та же карточка, если совпадают все показываемые поля
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BookSummary)) return false;
+        BookSummary other = (BookSummary) o;
+        return id == other.id
+                && year == other.year
+                && Float.compare(rating, other.rating) == 0
+                && lastPage == other.lastPage
+                && totalPages == other.totalPages
+                && readerPercent == other.readerPercent
+                && Objects.equals(title, other.title)
+                && Objects.equals(author, other.author)
+                && Objects.equals(genre, other.genre)
+                && Objects.equals(status, other.status)
+                && Objects.equals(dateRead, other.dateRead);
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+}
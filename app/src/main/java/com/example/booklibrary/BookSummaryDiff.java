@@ -0,0 +1,61 @@
+package com.example.booklibrary;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.Objects;
+
+/**
+ * DiffUtil для карточек BookSummary (BookAdapter, RecentBooksAdapter): элемент — по id,
+ * а если изменились только прогресс или только статус — payload, и адаптер
+ * перерисовывает одну эту часть карточки вместо полной привязки.
+ */
+final class BookSummaryDiff extends DiffUtil.ItemCallback<BookSummary> {
+
+    // Только readerPercent / lastPage / totalPages (сохранение позиции читалки)
+    static final Object PAYLOAD_PROGRESS = "progress";
+    // Только status / dateRead / rating
+    static final Object PAYLOAD_STATUS = "status";
+
+    @Override
+    public boolean areItemsTheSame(@NonNull BookSummary a, @NonNull BookSummary b) {
+        return a.getId() == b.getId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull BookSummary a, @NonNull BookSummary b) {
+        return a.equals(b);
+    }
+
+    // null — изменилось что-то ещё или сразу несколько частей: полная привязка
+    @Nullable
+    @Override
+    public Object getChangePayload(@NonNull BookSummary a, @NonNull BookSummary b) {
+        if (!sameCard(a, b)) return null;
+        boolean progress = sameProgress(a, b);
+        boolean status = sameStatus(a, b);
+        if (status && !progress) return PAYLOAD_PROGRESS;
+        if (progress && !status) return PAYLOAD_STATUS;
+        return null;
+    }
+
+    private static boolean sameCard(BookSummary a, BookSummary b) {
+        return a.getYear() == b.getYear()
+                && Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getAuthor(), b.getAuthor())
+                && Objects.equals(a.getGenre(), b.getGenre());
+    }
+
+    private static boolean sameProgress(BookSummary a, BookSummary b) {
+        return a.getReaderPercent() == b.getReaderPercent()
+                && a.getLastPage() == b.getLastPage()
+                && a.getTotalPages() == b.getTotalPages();
+    }
+
+    private static boolean sameStatus(BookSummary a, BookSummary b) {
+        return Float.compare(a.getRating(), b.getRating()) == 0
+                && Objects.equals(a.getStatus(), b.getStatus())
+                && Objects.equals(a.getDateRead(), b.getDateRead());
+    }
+}
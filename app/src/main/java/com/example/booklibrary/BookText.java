@@ -0,0 +1,108 @@
+package com.example.booklibrary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Открытый текст книги: UTF-8 файл и таблица смещений блоков,
+ * оба отображены в память через FileChannel.map.
+ *
+ * Открытие не читает текст целиком — только отображает файлы, поэтому
+ * стоит одинаково для книги любого размера. Блок декодируется из байтов
+ * файла только когда его запросили. Потокобезопасен: каждый вызов
+ * работает со своим duplicate() буфера.
+ */
+public final class BookText {
+
+    private final MappedByteBuffer text;
+    private final IntBuffer offsets;
+    private final int blockCount;
+
+    private BookText(MappedByteBuffer text, IntBuffer offsets) {
+        this.text = text;
+        this.offsets = offsets;
+        this.blockCount = offsets.get(0);
+    }
+
+    static BookText open(File textFile, File indexFile) throws IOException {
+        MappedByteBuffer index = map(indexFile);
+        MappedByteBuffer text = map(textFile);
+        return new BookText(text, index.asIntBuffer());
+    }
+
+    // Отображение остаётся валидным и после закрытия канала
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    // Смещение блока в байтах UTF-8 файла; index == getBlockCount() — размер всего текста
+    public int getByteOffset(int index) {
+        return offsets.get(1 + index);
+    }
+
+    // Блок, в который попадает байт текста (для оценки позиции по доле текста)
+    public int blockAtByte(long byteOffset) {
+        int lo = 0;
+        int hi = blockCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets.get(1 + mid) <= byteOffset) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    public String getBlock(int index) {
+        // offsets: [count, start0, start1, ..., startN]; после каждого блока в файле '\n'
+        int start = offsets.get(1 + index);
+        int end = offsets.get(2 + index) - 1;
+
+        ByteBuffer slice = text.duplicate();
+        slice.position(start);
+        slice.limit(end);
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+
+    // Блоки [from, to) одним декодером в один общий char[] — виды CharBlock, без строки на блок
+    public List<CharSequence> getBlocks(int from, int to) {
+        int end = Math.min(to, blockCount);
+        if (from >= end) return new ArrayList<>(0);
+
+        // в UTF-8 символов не больше, чем байтов
+        char[] chars = new char[offsets.get(1 + end) - offsets.get(1 + from)];
+        CharBuffer out = CharBuffer.wrap(chars);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer slice = text.duplicate();
+
+        List<CharSequence> blocks = new ArrayList<>(end - from);
+        for (int i = from; i < end; i++) {
+            slice.limit(offsets.get(2 + i) - 1);
+            slice.position(offsets.get(1 + i));
+            int start = out.position();
+            decoder.reset();
+            decoder.decode(slice, out, true);
+            decoder.flush(out);
+            blocks.add(new CharBlock(chars, start, out.position() - start));
+        }
+        return blocks;
+    }
+}
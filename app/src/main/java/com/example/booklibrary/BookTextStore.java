@@ -0,0 +1,283 @@
+package com.example.booklibrary;
+
+import android.content.Context;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Хранилище текста книг в файлах приложения, вне базы:
+ *  - books/<id>.txt — блоки в UTF-8, после каждого '\n'
+ *  - books/<id>.idx — int count и count + 1 смещений начала блоков (big-endian)
+ *  - books/<id>.img/ — картинки из <binary> FB2, файл на картинку
+ *  - books/<id>.cover.jpg — уменьшенная обложка для списков (CoverCache)
+ *  - cache/pages/<id>/ — карты страниц постраничного режима (PageMap), их можно потерять
+ *
+ * Текст пишется один раз при импорте, читается через BookText.
+ */
+public class BookTextStore {
+
+    private static final String DIR_NAME = "books";
+    private static final String PAGES_DIR_NAME = "pages";
+
+    private final File dir;
+    private final File pagesDir;
+
+    public BookTextStore(Context context) {
+        dir = new File(context.getFilesDir(), DIR_NAME);
+        pagesDir = new File(context.getCacheDir(), PAGES_DIR_NAME);
+    }
+
+    private File textFile(int bookId) {
+        return new File(dir, bookId + ".txt");
+    }
+
+    private File indexFile(int bookId) {
+        return new File(dir, bookId + ".idx");
+    }
+
+    private File imageDir(int bookId) {
+        return new File(dir, bookId + ".img");
+    }
+
+    // Может не существовать — у книги нет обложки
+    public File coverFile(int bookId) {
+        return new File(dir, bookId + ".cover.jpg");
+    }
+
+    // Карта страниц для версии текста и разметки (PageMap); каталог книги создаётся при записи
+    public File pageMapFile(int bookId, long textVersion, String layoutKey) {
+        return new File(new File(pagesDir, String.valueOf(bookId)), textVersion + "-" + layoutKey);
+    }
+
+    public Writer newWriter() throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Не удаётся создать каталог " + dir);
+        }
+        return new Writer();
+    }
+
+    // null — у книги нет текста
+    public BookText open(int bookId) throws IOException {
+        File text = textFile(bookId);
+        File index = indexFile(bookId);
+        if (!text.isFile() || !index.isFile()) return null;
+        return BookText.open(text, index);
+    }
+
+    public void delete(int bookId) {
+        textFile(bookId).delete();
+        indexFile(bookId).delete();
+        coverFile(bookId).delete();
+        deleteTree(imageDir(bookId));
+        deleteTree(new File(pagesDir, String.valueOf(bookId)));
+    }
+
+    private static void move(File from, File to) throws IOException {
+        if (!from.renameTo(to)) throw new IOException("Не удаётся переименовать " + from + " в " + to);
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteTree(child);
+        }
+        file.delete();
+    }
+
+    // id из FB2 — имя файла: без разделителей пути и без ведущей точки
+    private static String safeName(String id) {
+        String name = id.replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.startsWith(".") || name.isEmpty() ? "_" + name : name;
+    }
+
+    /**
+     * Пишет блоки (и картинки <binary>) во временные файлы; commit() ставит их на место
+     * файлов книги, а прежние откладывает в резервные копии. rollback() возвращает
+     * прежние файлы (транзакция базы откатилась), close() после commit() удаляет
+     * резервные копии, без commit() — выбрасывает написанное.
+     */
+    public final class Writer implements Closeable, Fb2Parser.BinarySink {
+
+        private final File tmpText;
+        private final File tmpIndex;
+        private final OutputStream out;
+        private File tmpImages;   // создаётся при первой картинке
+        private File tmpCover;
+
+        private int[] offsets = new int[1024];
+        private int count;
+        private int position;
+        private boolean committed;
+        // После commit(): файлы книги, их резервные копии (null — файла не было)
+        // и какие из файлов книги уже новые
+        private File[] live;
+        private File[] saved;
+        private boolean[] moved;
+        private int committedId;
+
+        // Непарные суррогаты — '?', как у String.getBytes
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer encoded = ByteBuffer.allocate(8192);
+
+        private Writer() throws IOException {
+            tmpText = File.createTempFile("text", ".tmp", dir);
+            tmpIndex = File.createTempFile("index", ".tmp", dir);
+            out = new BufferedOutputStream(new FileOutputStream(tmpText), 64 * 1024);
+        }
+
+        public void writeBlock(String block) throws IOException {
+            char[] chars = block.toCharArray();
+            writeBlock(chars, 0, chars.length);
+        }
+
+        // Отрезок массива — в UTF-8 через один encoder и переиспользуемый буфер
+        public void writeBlock(char[] chars, int start, int length) throws IOException {
+            int max = length * 3;  // UTF-8: не больше 3 байтов на char
+            if (encoded.capacity() < max) encoded = ByteBuffer.allocate(Math.max(max, encoded.capacity() * 2));
+            encoded.clear();
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(chars, start, length), encoded, true);
+            encoder.flush(encoded);
+
+            if (count + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[count++] = position;
+            out.write(encoded.array(), 0, encoded.position());
+            out.write('\n');
+            position += encoded.position() + 1;
+        }
+
+        // Кусок текста (например, абзац из Fb2Parser) — на блоки BlockSplitter'ом, без строк
+        public void writeText(String text) throws IOException {
+            BlockSplitter.Blocks blocks = BlockSplitter.segment(text);
+            for (int i = 0; i < blocks.size(); i++) {
+                writeBlock(blocks.array(), blocks.start(i), blocks.length(i));
+            }
+        }
+
+        public int getBlockCount() {
+            return count;
+        }
+
+        // Картинка — сразу в файл; для обложки после записи делается миниатюра
+        @Override
+        public OutputStream openBinary(String id, String contentType, boolean cover) throws IOException {
+            if (tmpImages == null) {
+                File images = new File(dir, tmpText.getName() + ".img");
+                if (!images.isDirectory() && !images.mkdirs()) {
+                    throw new IOException("Не удаётся создать каталог " + images);
+                }
+                tmpImages = images;
+            }
+            File file = new File(tmpImages, safeName(id));
+            OutputStream image = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+            if (!cover) return image;
+
+            return new FilterOutputStream(image) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    image.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    File thumbnail = new File(dir, tmpText.getName() + ".cover");
+                    if (CoverCache.writeThumbnail(file, thumbnail)) {
+                        tmpCover = thumbnail;
+                    } else {
+                        thumbnail.delete();
+                    }
+                }
+            };
+        }
+
+        // Прежние файлы книги не удаляются: при ошибке здесь или откате транзакции
+        // (rollback) они возвращаются на место
+        public void commit(int bookId) throws IOException {
+            out.close();
+            offsets[count] = position;
+
+            try (DataOutputStream index = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpIndex)))) {
+                index.writeInt(count);
+                for (int i = 0; i <= count; i++) {
+                    index.writeInt(offsets[i]);
+                }
+            }
+
+            File[] fresh = {tmpText, tmpIndex, tmpImages, tmpCover};
+            live = new File[]{textFile(bookId), indexFile(bookId), imageDir(bookId), coverFile(bookId)};
+            saved = new File[live.length];
+            moved = new boolean[live.length];
+            try {
+                for (int i = 0; i < live.length; i++) {
+                    if (!live[i].exists()) continue;
+                    File backup = new File(dir, tmpText.getName() + ".bak" + i);
+                    move(live[i], backup);
+                    saved[i] = backup;
+                }
+                for (int i = 0; i < live.length; i++) {
+                    if (fresh[i] == null) continue;
+                    move(fresh[i], live[i]);
+                    moved[i] = true;
+                }
+            } catch (IOException e) {
+                restore();
+                throw new IOException("Не удаётся сохранить текст книги " + bookId, e);
+            }
+            committedId = bookId;
+            committed = true;
+        }
+
+        // Транзакция с этим текстом не состоялась: у книги снова прежние файлы
+        public void rollback() {
+            if (!committed) return;
+            restore();
+            committed = false;
+        }
+
+        private void restore() {
+            for (int i = 0; i < live.length; i++) {
+                if (moved[i]) deleteTree(live[i]);
+                if (saved[i] != null) saved[i].renameTo(live[i]);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException ignored) { }
+
+            if (committed) {
+                for (File backup : saved) {
+                    if (backup != null) deleteTree(backup);
+                }
+                // карты страниц прежнего текста больше не понадобятся
+                deleteTree(new File(pagesDir, String.valueOf(committedId)));
+            } else {
+                tmpText.delete();
+                tmpIndex.delete();
+                if (tmpImages != null) deleteTree(tmpImages);
+                if (tmpCover != null) tmpCover.delete();
+            }
+        }
+    }
+}
@@ -1,97 +1,160 @@
 package com.example.booklibrary;
 
 import android.app.Application;
+import android.net.Uri;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
 
-
+import java.io.IOException;
 import java.util.List;
 
 public class BookViewModel extends AndroidViewModel {
 
     private final BookRepository repository;
 
-    // Внешний источник для фрагмента (один на все случаи)
-    private final MediatorLiveData<List<Book>> booksLiveData = new MediatorLiveData<>();
+    // Внешний источник для фрагмента (один на все случаи): страницы текущего источника
+    private final MediatorLiveData<PagingData<BookSummary>> booksLiveData = new MediatorLiveData<>();
+    // Кэш страниц переживает поворот экрана; держится только для текущего источника
+    private final LiveData<PagingData<BookSummary>> books;
 
-    // Текущий источник (зависит от фильтра/сортировки)
-    private LiveData<List<Book>> currentSource;
+    // Текущий источник (зависит от фильтра/сортировки). Каждый раз новый: PagingData
+    // старого источника уже собрана кэшем, повторно отдавать её нельзя
+    private LiveData<PagingData<BookSummary>> currentSource;
 
-    private LiveData<List<Book>> allBooksSortedByTitle;
-    private LiveData<List<Book>> allBooksSortedByDate;
+    // Загрузка книги из FB2 в карточке — переживает поворот экрана
+    private final MutableLiveData<Fb2Import.Progress> fb2Progress = new MutableLiveData<>();
+    private final MutableLiveData<Fb2Import.Result> fb2Result = new MutableLiveData<>();
+    private Fb2Import fb2Import;
 
     private final MutableLiveData<String> currentFilter = new MutableLiveData<>("");
     private final MutableLiveData<String> currentSort = new MutableLiveData<>("title");
 
     public BookViewModel(@NonNull Application application) {
         super(application);
-        repository = new BookRepository(application);
+        repository = BookRepository.getInstance(application);
 
-        allBooksSortedByTitle = repository.getAllBooksSortedByTitle();
-        allBooksSortedByDate = repository.getAllBooksSortedByDate();
+        books = PagingLiveData.cachedIn(booksLiveData, ViewModelKt.getViewModelScope(this));
 
         // по умолчанию сортировка по названию
-        switchSource(allBooksSortedByTitle);
+        switchSource(repository.getAllBooksSortedByTitle());
     }
 
     // --- CRUD ---
     public void insert(Book book) { repository.insert(book); }
+    public void insert(Book book, BookTextStore.Writer text) { repository.insert(book, text); }
     public void update(Book book) { repository.update(book); }
+    public void update(Book book, BookTextStore.Writer text) { repository.update(book, text); }
     public void delete(Book book) { repository.delete(book); }
 
     // --- Данные для UI ---
-    public LiveData<List<Book>> getAllBooks() {
-        return booksLiveData;
+    public LiveData<PagingData<BookSummary>> getAllBooks() {
+        return books;
     }
 
     public LiveData<Book> getBookById(int id) {
         return repository.getBookById(id);
     }
 
+    // Текст для insert/update; после передачи туда writer закрывает репозиторий
+    public BookTextStore.Writer newTextWriter() throws IOException {
+        return repository.newTextWriter();
+    }
+
+    // --- Загрузка FB2 ---
+    public void importFb2(Uri uri) {
+        cancelFb2Import();
+        clearFb2Import();
+        Fb2Import task = new Fb2Import(getApplication(), repository);
+        fb2Import = task;
+        fb2Progress.setValue(new Fb2Import.Progress(0, -1));
+        task.start(uri, new Fb2Import.Listener() {
+            @Override
+            public void onProgress(Fb2Import.Progress progress) {
+                if (fb2Import == task) fb2Progress.setValue(progress);
+            }
+
+            @Override
+            public void onFinished(Fb2Import.Result result) {
+                if (fb2Import != task) {
+                    // загрузку уже заменили другой
+                    if (result.text != null) result.text.close();
+                    return;
+                }
+                fb2Import = null;
+                fb2Progress.setValue(null);
+                fb2Result.setValue(result);
+            }
+        });
+    }
+
+    public void cancelFb2Import() {
+        if (fb2Import != null) fb2Import.cancel();
+    }
+
+    public boolean isFb2ImportRunning() {
+        return fb2Import != null;
+    }
+
+    // null — загрузки нет
+    public LiveData<Fb2Import.Progress> getFb2Progress() {
+        return fb2Progress;
+    }
+
+    // Результат отдаётся один раз: получатель забирает text и вызывает clearFb2Import()
+    public LiveData<Fb2Import.Result> getFb2Result() {
+        return fb2Result;
+    }
+
+    public void clearFb2Import() {
+        fb2Result.setValue(null);
+    }
+
     // --- Фильтры / поиск ---
     public void filterByStatus(String status) {
         currentFilter.setValue(status);
-        LiveData<List<Book>> source = repository.getBooksByStatus(status);
+        LiveData<PagingData<BookSummary>> source = repository.getBooksByStatus(status);
         switchSource(source);
     }
 
     public void filterByAuthor(String author) {
         currentFilter.setValue("author:" + author);
-        LiveData<List<Book>> source = repository.getBooksByAuthorLike(author);
+        LiveData<PagingData<BookSummary>> source = repository.getBooksByAuthor(author);
         switchSource(source);
     }
 
     public void filterByGenre(String genre) {
         currentFilter.setValue("genre:" + genre);
-        LiveData<List<Book>> source = repository.getBooksByGenreLike(genre);
+        LiveData<PagingData<BookSummary>> source = repository.getBooksByGenre(genre);
         switchSource(source);
     }
 
     public void search(String query) {
         currentFilter.setValue("search:" + query);
-        LiveData<List<Book>> source = repository.searchBooks(query);
+        LiveData<PagingData<BookSummary>> source = repository.searchBooks(query);
         switchSource(source);
     }
 
     public void clearFilter() {
         currentFilter.setValue("");
         if ("date".equals(currentSort.getValue())) {
-            switchSource(allBooksSortedByDate);
+            switchSource(repository.getAllBooksSortedByDate());
         } else {
-            switchSource(allBooksSortedByTitle);
+            switchSource(repository.getAllBooksSortedByTitle());
         }
     }
 
     // --- Сортировка ---
     public void sortByTitle() {
         currentSort.setValue("title");
-        allBooksSortedByTitle = repository.getAllBooksSortedByTitle();
         if (!hasFilter()) {
-            switchSource(allBooksSortedByTitle);
+            switchSource(repository.getAllBooksSortedByTitle());
         } else {
             applyCurrentFilter();
         }
@@ -99,9 +162,8 @@ public class BookViewModel extends AndroidViewModel {
 
     public void sortByDate() {
         currentSort.setValue("date");
-        allBooksSortedByDate = repository.getAllBooksSortedByDate();
         if (!hasFilter()) {
-            switchSource(allBooksSortedByDate);
+            switchSource(repository.getAllBooksSortedByDate());
         } else {
             applyCurrentFilter();
         }
@@ -128,7 +190,9 @@ public class BookViewModel extends AndroidViewModel {
     }
 
     // --- Переключение источников ---
-    private void switchSource(LiveData<List<Book>> newSource) {
+    // Новые данные в таблицах Pager подхватывает сам (Room инвалидирует PagingSource),
+    // источник меняется только при смене фильтра или сортировки
+    private void switchSource(LiveData<PagingData<BookSummary>> newSource) {
         if (currentSource != null) {
             booksLiveData.removeSource(currentSource);
         }
@@ -137,36 +201,24 @@ public class BookViewModel extends AndroidViewModel {
     }
 
     // --- Статистика ---
-    public LiveData<Integer> getReadBooksCountForYear(String year) {
-        return repository.getReadBooksCountForYear(year);
-    }
-
-    public LiveData<Integer> getTotalReadBooks() {
-        return repository.getTotalReadBooks();
-    }
-
-    public LiveData<Integer> getTotalReadingBooks() {
-        return repository.getTotalReadingBooks();
-    }
-
-    public LiveData<Integer> getTotalPlannedBooks() {
-        return repository.getTotalPlannedBooks();
-    }
-
-    public LiveData<Float> getAverageRating() {
-        return repository.getAverageRating();
+    public LiveData<LibraryStats> getLibraryStats() {
+        return repository.getLibraryStats();
     }
 
-    public LiveData<Integer> getTotalBooks() {
-        return repository.getTotalBooks();
+    public LiveData<ReadingHistory> getReadingHistory() {
+        return repository.getReadingHistory();
     }
 
-    public LiveData<List<Book>> getRecentReadBooks(int limit) {
+    public LiveData<List<BookSummary>> getRecentReadBooks(int limit) {
         return repository.getRecentReadBooks(limit);
     }
 
     @Override
     protected void onCleared() {
-        repository.shutdown();
+        cancelFb2Import();
+        Fb2Import.Result unclaimed = fb2Result.getValue();
+        if (unclaimed != null && unclaimed.text != null) unclaimed.text.close();
+        // репозиторий общий для всех экранов — только дописываем отложенные изменения
+        repository.flush();
     }
 }
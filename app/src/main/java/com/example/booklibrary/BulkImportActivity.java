@@ -0,0 +1,127 @@
+package com.example.booklibrary;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.lifecycle.ViewModelProvider;
+
+import com.google.android.material.appbar.MaterialToolbar;
+
+/**
+ * Импорт всех FB2 из выбранной папки: прогресс, отмена и отчёт об ошибках по файлам.
+ */
+public class BulkImportActivity extends BaseActivity {
+
+    private static final int REQUEST_PICK_FOLDER = 200;
+    // Длинный список ошибок целиком в TextView не нужен
+    private static final int MAX_ERRORS_SHOWN = 200;
+
+    private BulkImportViewModel viewModel;
+
+    private Button buttonPickFolder, buttonCancel;
+    private CheckBox checkMetadataOnly;
+    private ProgressBar progressBar;
+    private TextView textStatus, textErrors;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_bulk_import);
+
+        MaterialToolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+        toolbar.setNavigationOnClickListener(v -> finish());
+
+        buttonPickFolder = findViewById(R.id.buttonPickFolder);
+        buttonCancel = findViewById(R.id.buttonCancelImport);
+        checkMetadataOnly = findViewById(R.id.checkMetadataOnly);
+        progressBar = findViewById(R.id.progressImport);
+        textStatus = findViewById(R.id.textImportStatus);
+        textErrors = findViewById(R.id.textImportErrors);
+
+        viewModel = new ViewModelProvider(this).get(BulkImportViewModel.class);
+
+        buttonPickFolder.setOnClickListener(v -> {
+            Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE);
+            startActivityForResult(intent, REQUEST_PICK_FOLDER);
+        });
+        buttonCancel.setOnClickListener(v -> {
+            viewModel.cancel();
+            buttonCancel.setEnabled(false);
+        });
+
+        viewModel.getProgress().observe(this, this::showProgress);
+        viewModel.getResult().observe(this, this::showResult);
+        updateButtons();
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_PICK_FOLDER && resultCode == RESULT_OK && data != null) {
+            Uri treeUri = data.getData();
+            if (treeUri == null) return;
+
+            boolean metadataOnly = checkMetadataOnly.isChecked();
+            if (metadataOnly) {
+                // текст будет читаться из папки и после перезапуска приложения
+                getContentResolver().takePersistableUriPermission(treeUri,
+                        Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            }
+
+            textErrors.setText("");
+            textStatus.setText(R.string.import_scanning);
+            progressBar.setIndeterminate(true);
+            progressBar.setVisibility(View.VISIBLE);
+            viewModel.start(treeUri, metadataOnly);
+            updateButtons();
+        }
+    }
+
+    private void showProgress(BulkImporter.Progress p) {
+        if (p == null) return;
+        progressBar.setVisibility(View.VISIBLE);
+        progressBar.setIndeterminate(p.total == 0 && viewModel.isRunning());
+        progressBar.setMax(Math.max(1, p.total));
+        progressBar.setProgress(p.processed);
+        textStatus.setText(getString(R.string.import_progress,
+                p.processed, p.total, p.imported, p.skipped, p.failed));
+    }
+
+    private void showResult(BulkImporter.Result r) {
+        updateButtons();
+        if (r == null) return;
+
+        progressBar.setIndeterminate(false);
+        textStatus.setText(getString(r.cancelled ? R.string.import_cancelled : R.string.import_done,
+                r.imported, r.total, r.skipped, r.errors.size(), r.elapsedMs / 1000f));
+
+        StringBuilder sb = new StringBuilder();
+        int shown = Math.min(r.errors.size(), MAX_ERRORS_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            BulkImporter.FileError e = r.errors.get(i);
+            sb.append(e.fileName).append(" — ").append(e.message).append('\n');
+        }
+        if (r.errors.size() > shown) {
+            sb.append(getString(R.string.import_more_errors, r.errors.size() - shown));
+        }
+        textErrors.setText(sb.toString().trim());
+    }
+
+    private void updateButtons() {
+        boolean running = viewModel.isRunning();
+        buttonPickFolder.setEnabled(!running);
+        checkMetadataOnly.setEnabled(!running);
+        buttonCancel.setVisibility(running ? View.VISIBLE : View.GONE);
+        buttonCancel.setEnabled(running);
+    }
+}
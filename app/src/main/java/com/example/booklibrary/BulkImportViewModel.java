@@ -0,0 +1,62 @@
+package com.example.booklibrary;
+
+import android.app.Application;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * Держит импорт папки, чтобы он переживал поворот экрана.
+ */
+public class BulkImportViewModel extends AndroidViewModel implements BulkImporter.Listener {
+
+    private final MutableLiveData<BulkImporter.Progress> progress = new MutableLiveData<>();
+    private final MutableLiveData<BulkImporter.Result> result = new MutableLiveData<>();
+    private BulkImporter importer;
+
+    public BulkImportViewModel(@NonNull Application application) {
+        super(application);
+    }
+
+    public void start(Uri treeUri, boolean metadataOnly) {
+        if (isRunning()) return;
+        result.setValue(null);
+        importer = new BulkImporter(getApplication(), BookRepository.getInstance(getApplication()),
+                metadataOnly);
+        importer.start(treeUri, this);
+    }
+
+    public void cancel() {
+        if (importer != null) importer.cancel();
+    }
+
+    public boolean isRunning() {
+        return importer != null && result.getValue() == null;
+    }
+
+    public LiveData<BulkImporter.Progress> getProgress() {
+        return progress;
+    }
+
+    public LiveData<BulkImporter.Result> getResult() {
+        return result;
+    }
+
+    @Override
+    public void onProgress(BulkImporter.Progress p) {
+        progress.setValue(p);
+    }
+
+    @Override
+    public void onFinished(BulkImporter.Result r) {
+        result.setValue(r);
+    }
+
+    @Override
+    protected void onCleared() {
+        cancel();
+    }
+}
@@ -0,0 +1,458 @@
+package com.example.booklibrary;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Импорт всех .fb2 и .zip с книгами FB2 из папки (SAF tree URI), включая подпапки.
+ * Файлы разбираются параллельно на пуле по числу ядер; записи архива — потоком,
+ * одна за другой, без распаковки на диск. Каждая разобранная книга сразу уходит
+ * в очередь на вставку; очередь ограничена, и разбор ждёт, пока вставка её разгребёт. В режиме metadataOnly читается только
+ * <description>, текст подгружается при первом открытии книги. Книга с тем же
+ * текстом (contentHash), что уже в библиотеке или раньше в этом импорте, пропускается
+ * до вставки. Готовые книги вставляются пачками по INSERT_BATCH в одной транзакции на пачку.
+ * Listener вызывается в UI-потоке.
+ */
+public class BulkImporter {
+
+    public interface Listener {
+        void onProgress(Progress progress);
+
+        void onFinished(Result result);
+    }
+
+    public static final int INSERT_BATCH = 25;
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    // Файлов, отданных пулу: на каждый поток один в работе и один в очереди
+    private static final int MAX_IN_FLIGHT = THREADS * 2;
+    // Разобранные книги ждут вставки с открытыми временными файлами текста: больше
+    // в очереди не держим, иначе архив на тысячи записей съест дескрипторы и память
+    static final int MAX_READY = INSERT_BATCH;
+    private static final long PROGRESS_INTERVAL_MS = 100;
+    // Без текста читается только начало файла — большой буфер лишь добавляет ввода-вывода
+    private static final int TEXT_BUFFER = 64 * 1024;
+    private static final int METADATA_BUFFER = 8 * 1024;
+
+    public static class Progress {
+        public final int total;      // найдено файлов
+        public final int processed;  // разобрано (успешно или с ошибкой)
+        public final int imported;   // уже в базе
+        public final int skipped;    // дубликаты
+        public final int failed;
+
+        Progress(int total, int processed, int imported, int skipped, int failed) {
+            this.total = total;
+            this.processed = processed;
+            this.imported = imported;
+            this.skipped = skipped;
+            this.failed = failed;
+        }
+    }
+
+    public static class FileError {
+        public final String fileName;
+        public final String message;
+
+        FileError(String fileName, String message) {
+            this.fileName = fileName;
+            this.message = message;
+        }
+    }
+
+    public static class Result {
+        public final int total;
+        public final int imported;
+        public final int skipped;
+        public final List<FileError> errors;
+        public final boolean cancelled;
+        public final long elapsedMs;
+
+        Result(int total, int imported, int skipped, List<FileError> errors, boolean cancelled,
+               long elapsedMs) {
+            this.total = total;
+            this.imported = imported;
+            this.skipped = skipped;
+            this.errors = errors;
+            this.cancelled = cancelled;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private static class Fb2File {
+        final String name;
+        final Uri uri;
+
+        Fb2File(String name, Uri uri) {
+            this.name = name;
+            this.uri = uri;
+        }
+    }
+
+    // Результат разбора одной книги (файла или записи архива): книга с текстом,
+    // ошибка или дубликат (book == null, error == null)
+    private static class Parsed {
+        final String name;
+        final Book book;
+        final BookTextStore.Writer text;
+        final String error;
+
+        Parsed(String name, Book book, BookTextStore.Writer text, String error) {
+            this.name = name;
+            this.book = book;
+            this.text = text;
+            this.error = error;
+        }
+
+        static Parsed duplicate(String name) {
+            return new Parsed(name, null, null, null);
+        }
+
+        boolean isDuplicate() {
+            return book == null && error == null;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final BookRepository repository;
+    private final Fb2Genres genres;
+    private final boolean metadataOnly;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+    // contentHash книг этого импорта: второй экземпляр из другого файла или архива — дубликат
+    private final Set<String> seenHashes = ConcurrentHashMap.newKeySet();
+    // Разобранные книги (и ошибки) от пула к потоку вставки
+    private final BlockingQueue<Parsed> ready = new ArrayBlockingQueue<>(MAX_READY);
+
+    private volatile ExecutorService workers;
+
+    // metadataOnly — книги регистрируются без текста, с sourceUri (нужен постоянный доступ к папке)
+    public BulkImporter(Context context, BookRepository repository, boolean metadataOnly) {
+        this.resolver = context.getContentResolver();
+        this.repository = repository;
+        this.genres = new Fb2Genres(context.getResources());
+        this.metadataOnly = metadataOnly;
+    }
+
+    // Один импортёр — один запуск
+    public void start(Uri treeUri, Listener listener) {
+        launch(listener, () -> run(treeUri, listener));
+    }
+
+    // Готовый список файлов вместо обхода папки (тесты)
+    void start(List<Uri> files, Listener listener) {
+        List<Fb2File> list = new ArrayList<>(files.size());
+        for (Uri uri : files) {
+            list.add(new Fb2File(String.valueOf(uri.getLastPathSegment()), uri));
+        }
+        launch(listener, () -> importFiles(list, new ArrayList<>(), listener, SystemClock.elapsedRealtime()));
+    }
+
+    private void launch(Listener listener, Runnable task) {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Импорт уже запущен");
+        }
+        Thread coordinator = new Thread(task, "fb2-import");
+        coordinator.start();
+    }
+
+    // Уже вставленные книги остаются, разобранные, но не вставленные — отбрасываются
+    public void cancel() {
+        cancelled.set(true);
+        ExecutorService pool = workers;
+        if (pool != null) pool.shutdownNow();
+    }
+
+    private void run(Uri treeUri, Listener listener) {
+        long startedAt = SystemClock.elapsedRealtime();
+        List<FileError> errors = new ArrayList<>();
+
+        List<Fb2File> files;
+        try {
+            files = listFb2Files(treeUri);
+        } catch (RuntimeException e) {
+            errors.add(new FileError(String.valueOf(treeUri.getLastPathSegment()),
+                    "Не удаётся прочитать папку: " + e.getMessage()));
+            files = Collections.emptyList();
+        }
+        importFiles(files, errors, listener, startedAt);
+    }
+
+    private void importFiles(List<Fb2File> files, List<FileError> errors, Listener listener,
+                             long startedAt) {
+        int imported = 0;
+        int skipped = 0;
+        int processed = 0;
+        int total = files.size();
+        post(listener, new Progress(total, 0, 0, 0, errors.size()));
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        workers = pool;
+        CompletionService<Void> completion = new ExecutorCompletionService<>(pool);
+
+        List<Parsed> batch = new ArrayList<>(INSERT_BATCH);
+        int next = 0;
+        int inFlight = 0;
+        long lastProgressAt = 0;
+
+        try {
+            // очередь пустеет последней: задача отдаёт в неё книги до своего завершения
+            while ((next < total || inFlight > 0 || !ready.isEmpty()) && !cancelled.get()) {
+                while (inFlight < MAX_IN_FLIGHT && next < total) {
+                    Fb2File file = files.get(next++);
+                    completion.submit(() -> parse(file), null);
+                    inFlight++;
+                }
+
+                // poll, а не take: после cancel() пул остановлен и книг может больше не быть
+                Parsed parsed = ready.poll(200, TimeUnit.MILLISECONDS);
+                while (parsed != null) {
+                    if (parsed.error != null) {
+                        errors.add(new FileError(parsed.name, parsed.error));
+                    } else if (parsed.isDuplicate()) {
+                        skipped++;
+                    } else {
+                        batch.add(parsed);
+                        if (batch.size() >= INSERT_BATCH) {
+                            imported += insertBatch(batch, errors);
+                        }
+                    }
+                    parsed = ready.poll();
+                }
+
+                Future<Void> done;
+                while ((done = completion.poll()) != null) {
+                    inFlight--;
+                    processed++;
+                    done.get();
+                }
+
+                long now = SystemClock.elapsedRealtime();
+                if (now - lastProgressAt >= PROGRESS_INTERVAL_MS) {
+                    lastProgressAt = now;
+                    post(listener, new Progress(total, processed, imported, skipped, errors.size()));
+                }
+            }
+
+            if (!cancelled.get() && !batch.isEmpty()) {
+                imported += insertBatch(batch, errors);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled.set(true);
+        } catch (ExecutionException e) {
+            // parse() сам ловит ошибки разбора; сюда доходят только Error (например, нехватка памяти)
+            errors.add(new FileError("—", "Импорт прерван: " + e.getCause()));
+        } finally {
+            pool.shutdownNow();
+            // отменённый импорт: не вставленные тексты — во временных файлах, удаляем
+            discard(batch);
+            discardReady(pool);
+        }
+
+        Progress last = new Progress(total, processed, imported, skipped, errors.size());
+        Result result = new Result(total, imported, skipped, errors, cancelled.get(),
+                SystemClock.elapsedRealtime() - startedAt);
+        mainHandler.post(() -> {
+            listener.onProgress(last);
+            listener.onFinished(result);
+        });
+    }
+
+    private void post(Listener listener, Progress progress) {
+        mainHandler.post(() -> listener.onProgress(progress));
+    }
+
+    // Обход дерева через DocumentsContract: один запрос на папку, без DocumentFile на каждый файл
+    private List<Fb2File> listFb2Files(Uri treeUri) {
+        List<Fb2File> result = new ArrayList<>();
+        Deque<String> dirs = new ArrayDeque<>();
+        dirs.add(DocumentsContract.getTreeDocumentId(treeUri));
+
+        String[] projection = {
+                DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+                DocumentsContract.Document.COLUMN_MIME_TYPE
+        };
+
+        while (!dirs.isEmpty() && !cancelled.get()) {
+            Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, dirs.poll());
+            try (Cursor c = resolver.query(children, projection, null, null, null)) {
+                if (c == null) continue;
+                while (c.moveToNext()) {
+                    String id = c.getString(0);
+                    String name = c.getString(1);
+                    String mime = c.getString(2);
+
+                    if (DocumentsContract.Document.MIME_TYPE_DIR.equals(mime)) {
+                        dirs.add(id);
+                    } else if (Fb2Archive.isBookName(name) || Fb2Archive.isArchiveName(name)) {
+                        result.add(new Fb2File(name, DocumentsContract.buildDocumentUriUsingTree(treeUri, id)));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // Выполняется в пуле; ошибки не бросает — отдаёт их в очередь как Parsed.
+    // Архив распознаётся по сигнатуре: из него — по книге на запись .fb2, каждая
+    // уходит на вставку сразу после разбора
+    private void parse(Fb2File file) {
+        try (InputStream in = resolver.openInputStream(file.uri)) {
+            if (in == null) {
+                deliver(new Parsed(file.name, null, null, "Не удаётся открыть файл"));
+                return;
+            }
+            BufferedInputStream buffered = new BufferedInputStream(in,
+                    metadataOnly ? METADATA_BUFFER : TEXT_BUFFER);
+            if (!Fb2Archive.looksLikeZip(buffered)) {
+                deliver(parseBook(file.name, file.uri, buffered));
+            } else {
+                int count = Fb2Archive.forEachBook(buffered, (entry, entryIn) -> {
+                    if (cancelled.get()) throw new InterruptedIOException("Импорт отменён");
+                    Uri source = file.uri.buildUpon().fragment(entry).build();
+                    deliver(parseBook(file.name + "/" + entry, source, entryIn));
+                });
+                if (count == 0) {
+                    deliver(new Parsed(file.name, null, null, "В архиве нет книг FB2"));
+                }
+            }
+        } catch (InterruptedIOException e) {
+            // импорт отменён или остановлен; не отданное в очередь deliver() уже закрыл
+        } catch (IOException | RuntimeException e) {
+            // книги, прочитанные из архива до ошибки, уже в очереди
+            try {
+                deliver(new Parsed(file.name, null, null, "Ошибка чтения: " + e.getMessage()));
+            } catch (InterruptedIOException stopped) {
+                // некому сообщать
+            }
+        }
+    }
+
+    // В очередь на вставку; при полной очереди ждёт. Пул остановлен — текст удаляется
+    private void deliver(Parsed parsed) throws InterruptedIOException {
+        if (!workers.isShutdown()) {
+            try {
+                ready.put(parsed);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeQuietly(parsed.text);
+        throw new InterruptedIOException("Импорт отменён");
+    }
+
+    // Одна книга; текст абзац за абзацем уходит во временные файлы, в памяти не копится.
+    // Дубликат отбрасывается вместе с ними — до вставки, в базу и хранилище ничего не попадает.
+    // metadataOnly — разбор до <body>, вместо текста запоминается source; хэша тогда нет,
+    // и дубликаты не ищутся — их найдёт loadTextFromSource, когда текст подгрузится
+    private Parsed parseBook(String name, Uri source, InputStream in) {
+        BookTextStore.Writer text = null;
+        try {
+            ParsedBook pb;
+            if (metadataOnly) {
+                pb = Fb2Parser.scanMetadata(in);
+            } else {
+                text = repository.newTextWriter();
+                pb = Fb2Parser.parse(in, text::writeText, text);
+                if (isDuplicate(pb.contentHash)) {
+                    closeQuietly(text);
+                    return Parsed.duplicate(name);
+                }
+            }
+            Book book = new Book(pb.title, pb.author, genres.mapToKnown(pb.genre), pb.getYear());
+            book.setContentHash(pb.contentHash);
+            if (metadataOnly) book.setSourceUri(source.toString());
+            return new Parsed(name, book, text, null);
+        } catch (Fb2FormatException e) {
+            closeQuietly(text);
+            return new Parsed(name, null, null, e.getMessage());
+        } catch (IOException | XmlPullParserException | RuntimeException e) {
+            closeQuietly(text);
+            return new Parsed(name, null, null, "Ошибка парсинга FB2: " + e.getMessage());
+        }
+    }
+
+    // Поиск в базе — по индексу, в наборе этого импорта — O(1)
+    private boolean isDuplicate(String contentHash) {
+        return !seenHashes.add(contentHash) || repository.findBookIdByContentHash(contentHash) != 0;
+    }
+
+    private static void closeQuietly(BookTextStore.Writer text) {
+        if (text != null) text.close();
+    }
+
+    private static void discard(List<Parsed> parsed) {
+        for (Parsed p : parsed) {
+            closeQuietly(p.text);
+        }
+    }
+
+    // Книги, попавшие в очередь после остановки: их тексты уже никто не вставит
+    private void discardReady(ExecutorService pool) {
+        try {
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Parsed parsed;
+        while ((parsed = ready.poll()) != null) {
+            closeQuietly(parsed.text);
+        }
+    }
+
+    // Возвращает число вставленных книг; при ошибке вся пачка попадает в отчёт
+    private int insertBatch(List<Parsed> batch, List<FileError> errors) {
+        List<Book> books = new ArrayList<>(batch.size());
+        List<BookTextStore.Writer> texts = new ArrayList<>(batch.size());
+        for (Parsed p : batch) {
+            books.add(p.book);
+            texts.add(p.text);
+        }
+
+        int inserted = 0;
+        try {
+            inserted = repository.insertAll(books, texts).length;
+        } catch (RuntimeException e) {
+            for (Parsed p : batch) {
+                errors.add(new FileError(p.name, "Не удалось сохранить: " + e.getMessage()));
+                // книга не сохранилась: следующий её экземпляр — уже не дубликат
+                if (p.book.getContentHash() != null) seenHashes.remove(p.book.getContentHash());
+            }
+        }
+        batch.clear();
+        return inserted;
+    }
+}
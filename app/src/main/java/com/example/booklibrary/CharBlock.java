@@ -0,0 +1,55 @@
+package com.example.booklibrary;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Блок текста как вид на отрезок общего char[] (страница BookText.getBlocks,
+ * результат BlockSplitter.segment). Массив не копируется и не должен меняться.
+ * ReaderBlocksAdapter отдаёт его в TextView.setText(char[], int, int) без строки.
+ */
+final class CharBlock implements CharSequence {
+
+    private final char[] chars;
+    private final int start;
+    private final int length;
+
+    CharBlock(char[] chars, int start, int length) {
+        this.chars = chars;
+        this.start = start;
+        this.length = length;
+    }
+
+    char[] array() {
+        return chars;
+    }
+
+    int start() {
+        return start;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index);
+        return chars[start + index];
+    }
+
+    @NonNull
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("[" + from + ", " + to + ")");
+        }
+        return new CharBlock(chars, start + from, to - from);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return new String(chars, start, length);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.booklibrary;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Обложки для списков. Два уровня: память (LruCache по размеру битмапов) и диск —
+ * уменьшенные копии, которые пишутся при импорте (BookTextStore.coverFile).
+ * С диска декодируется в фоне, результат приходит в UI-поток.
+ */
+public final class CoverCache {
+
+    // Высота миниатюры на диске; карточка показывает её ещё меньше
+    static final int THUMBNAIL_HEIGHT = 320;
+    private static final int JPEG_QUALITY = 85;
+
+    public interface Callback {
+        // cover == null — у книги нет обложки
+        void onCover(int bookId, Bitmap cover);
+    }
+
+    private static volatile CoverCache instance;
+
+    public static CoverCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (CoverCache.class) {
+                if (instance == null) {
+                    instance = new CoverCache(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final BookTextStore store;
+    private final LruCache<Integer, Bitmap> memory;
+    // Книги без обложки: для них load() не нужен, иначе каждый bind — лишняя задача декодера
+    private final Set<Integer> missing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService decoder = Executors.newFixedThreadPool(2);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private CoverCache(Context context) {
+        store = new BookTextStore(context);
+        // 1/16 кучи: при RGB_565 это сотни миниатюр
+        int maxKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+        memory = new LruCache<Integer, Bitmap>(maxKb) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return value.getByteCount() / 1024;
+            }
+        };
+    }
+
+    // Только из памяти; null — нужно load()
+    public Bitmap getCached(int bookId) {
+        return memory.get(bookId);
+    }
+
+    // true — уже проверено, что обложки у книги нет
+    public boolean isKnownMissing(int bookId) {
+        return missing.contains(bookId);
+    }
+
+    // Задачу можно отменить (cancel(false)), пока она в очереди — например, карточка ушла с экрана
+    public Future<?> load(int bookId, Callback callback) {
+        return decoder.submit(() -> {
+            File file = store.coverFile(bookId);
+            Bitmap cover = null;
+            if (file.isFile()) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inPreferredConfig = Bitmap.Config.RGB_565;
+                cover = BitmapFactory.decodeFile(file.getPath(), options);
+            }
+            if (cover != null) {
+                memory.put(bookId, cover);
+            } else {
+                missing.add(bookId);
+            }
+            Bitmap result = cover;
+            mainHandler.post(() -> callback.onCover(bookId, result));
+        });
+    }
+
+    // Обложка книги сменилась (новый текст)
+    public void invalidate(int bookId) {
+        memory.remove(bookId);
+        missing.remove(bookId);
+    }
+
+    // Уменьшенная копия обложки: сначала decode с inSampleSize (исходник целиком в память
+    // не попадает), потом точное масштабирование до THUMBNAIL_HEIGHT. false — не картинка
+    static boolean writeThumbnail(File source, File target) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(source.getPath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return false;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (bounds.outHeight / (options.inSampleSize * 2) >= THUMBNAIL_HEIGHT) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap bitmap = BitmapFactory.decodeFile(source.getPath(), options);
+        if (bitmap == null) return false;
+
+        if (bitmap.getHeight() > THUMBNAIL_HEIGHT) {
+            int width = Math.max(1, bitmap.getWidth() * THUMBNAIL_HEIGHT / bitmap.getHeight());
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, THUMBNAIL_HEIGHT, true);
+            if (scaled != bitmap) bitmap.recycle();
+            bitmap = scaled;
+        }
+
+        try (OutputStream out = new FileOutputStream(target)) {
+            return bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+}
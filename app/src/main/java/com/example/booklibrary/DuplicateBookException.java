@@ -0,0 +1,17 @@
+package com.example.booklibrary;
+
+import java.io.IOException;
+
+/**
+ * Текст книги из каталога совпал с текстом другой книги библиотеки: такой импорт
+ * «только каталог» не поймал — хэша до разбора текста нет. Текст не сохраняется.
+ */
+public class DuplicateBookException extends IOException {
+
+    public final int duplicateOf;    // id книги с тем же текстом
+
+    public DuplicateBookException(int duplicateOf) {
+        super("Книга с таким же текстом уже есть в библиотеке");
+        this.duplicateOf = duplicateOf;
+    }
+}
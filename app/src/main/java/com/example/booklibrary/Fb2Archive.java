@@ -0,0 +1,94 @@
+package com.example.booklibrary;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * .fb2.zip и архивы с несколькими книгами. Записи читаются потоком через
+ * ZipInputStream прямо в парсер — на диск ничего не распаковывается.
+ */
+final class Fb2Archive {
+
+    /**
+     * Получатель книг из архива. entry — поток одной записи: закрывать его
+     * не нужно, после возврата архив переходит к следующей записи.
+     */
+    interface EntryHandler {
+        void onEntry(String name, InputStream entry) throws IOException;
+    }
+
+    // Имена в архивах из Windows чаще всего в CP866 (если в записи нет флага UTF-8)
+    private static final Charset ENTRY_NAMES = Charset.isSupported("IBM866")
+            ? Charset.forName("IBM866") : StandardCharsets.ISO_8859_1;
+
+    private Fb2Archive() { }
+
+    static boolean isBookName(String name) {
+        return name != null && name.toLowerCase(Locale.ROOT).endsWith(".fb2");
+    }
+
+    static boolean isArchiveName(String name) {
+        return name != null && name.toLowerCase(Locale.ROOT).endsWith(".zip");
+    }
+
+    // По сигнатуре "PK\3\4": имя файла из content:// бывает неизвестно.
+    // in должен поддерживать mark (например, BufferedInputStream)
+    static boolean looksLikeZip(InputStream in) throws IOException {
+        in.mark(4);
+        try {
+            return in.read() == 'P' && in.read() == 'K' && in.read() == 3 && in.read() == 4;
+        } finally {
+            in.reset();
+        }
+    }
+
+    // Поток первой записи .fb2 (у .fb2.zip она обычно единственная); null — книг в архиве нет
+    static InputStream openFirstBook(InputStream in) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in, ENTRY_NAMES);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory() && isBookName(entry.getName())) return zip;
+        }
+        return null;
+    }
+
+    // Поток записи с данным именем; null — такой записи нет
+    static InputStream openEntry(InputStream in, String entryName) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in, ENTRY_NAMES);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entryName.equals(entry.getName())) return zip;
+        }
+        return null;
+    }
+
+    // Отдаёт handler записи .fb2 по одной; возвращает их число
+    static int forEachBook(InputStream in, EntryHandler handler) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in, ENTRY_NAMES);
+        InputStream entryStream = new EntryStream(zip);
+        int books = 0;
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory() || !isBookName(entry.getName())) continue;
+            handler.onEntry(entry.getName(), entryStream);
+            books++;
+        }
+        return books;
+    }
+
+    // Поток текущей записи: close() не закрывает архив
+    private static final class EntryStream extends FilterInputStream {
+        EntryStream(ZipInputStream zip) {
+            super(zip);
+        }
+
+        @Override
+        public void close() { }
+    }
+}
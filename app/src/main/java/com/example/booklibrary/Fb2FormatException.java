@@ -0,0 +1,12 @@
+package com.example.booklibrary;
+
+/**
+ * FB2 разобран, но книга в нём непригодна: нет названия или текста.
+ * Сообщение — готовый текст для пользователя.
+ */
+public class Fb2FormatException extends Exception {
+
+    public Fb2FormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.booklibrary;
+
+import android.content.res.Resources;
+
+/**
+ * Приводит жанр из FB2 (genre-код или произвольная строка) к одному из жанров приложения.
+ */
+public class Fb2Genres {
+
+    private final String[] genresEn;
+    private final String[] genresRu;
+
+    public Fb2Genres(Resources resources) {
+        genresEn = resources.getStringArray(R.array.book_genres_en);
+        genresRu = resources.getStringArray(R.array.book_genres_ru);
+    }
+
+    // Русское название для UI; "Другое" — если не подошёл ни один; null — жанра нет
+    public String mapToKnown(String parsedGenre) {
+        if (parsedGenre == null) return null;
+
+        String normalized = parsedGenre.trim().toLowerCase();
+
+        for (int i = 0; i < genresEn.length; i++) {
+            String en = genresEn[i].toLowerCase();
+            String ru = genresRu[i].toLowerCase();
+
+            if (normalized.contains(en) || en.contains(normalized)
+                    || normalized.contains(ru) || ru.contains(normalized)) {
+                return genresRu[i];
+            }
+        }
+
+        return "Другое";
+    }
+}
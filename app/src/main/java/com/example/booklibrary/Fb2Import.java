@@ -0,0 +1,170 @@
+package com.example.booklibrary;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.OpenableColumns;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Загрузка одной книги FB2 (или .fb2.zip) в фоновом потоке: прогресс по прочитанным
+ * байтам файла, отмена, итог — объектом Result, без тостов. Listener вызывается в UI-потоке.
+ */
+public class Fb2Import {
+
+    public interface Listener {
+        void onProgress(Progress progress);
+
+        void onFinished(Result result);
+    }
+
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    public static class Progress {
+        public final long bytesRead;
+        public final long totalBytes;  // -1 — размер файла неизвестен
+
+        Progress(long bytesRead, long totalBytes) {
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+        }
+
+        // -1 — неизвестно (нет размера файла)
+        public int getPercent() {
+            if (totalBytes <= 0) return -1;
+            return (int) Math.min(100, bytesRead * 100 / totalBytes);
+        }
+    }
+
+    public static class Result {
+        public final ParsedBook book;            // null — книга не загружена
+        public final BookTextStore.Writer text;  // текст книги; закрыть или передать в BookRepository
+        public final String error;
+        public final boolean cancelled;
+        public final int duplicateOf;            // id книги с тем же текстом; 0 — такой нет
+
+        Result(ParsedBook book, BookTextStore.Writer text, String error, boolean cancelled,
+               int duplicateOf) {
+            this.book = book;
+            this.text = text;
+            this.error = error;
+            this.cancelled = cancelled;
+            this.duplicateOf = duplicateOf;
+        }
+
+        static Result failed(String error) {
+            return new Result(null, null, error, false, 0);
+        }
+
+        public boolean isSuccess() {
+            return book != null;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final BookRepository repository;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    public Fb2Import(Context context, BookRepository repository) {
+        this.resolver = context.getContentResolver();
+        this.repository = repository;
+    }
+
+    // Одна загрузка — один запуск
+    public void start(Uri uri, Listener listener) {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Загрузка уже запущена");
+        }
+        new Thread(() -> run(uri, listener), "fb2-load").start();
+    }
+
+    // Разбор прерывается на ближайшем абзаце или чтении файла, временные файлы текста удаляются
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    private void run(Uri uri, Listener listener) {
+        long total = querySize(uri);
+        BookTextStore.Writer text = null;
+        Result result;
+
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) {
+                result = Result.failed("Не удаётся открыть файл");
+            } else {
+                // большой <binary> декодируется без абзацев — отмена проверяется и при чтении
+                CountingInputStream counter = new CountingInputStream(in) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        checkCancelled();
+                        return super.read(b, off, len);
+                    }
+                };
+                text = repository.newTextWriter();
+                BookTextStore.Writer writer = text;
+                long[] lastProgressAt = {0};
+
+                ParsedBook book = Fb2Parser.parseBookOrArchive(
+                        new BufferedInputStream(counter, 64 * 1024), paragraph -> {
+                            checkCancelled();
+                            writer.writeText(paragraph);
+
+                            long now = SystemClock.elapsedRealtime();
+                            if (now - lastProgressAt[0] >= PROGRESS_INTERVAL_MS) {
+                                lastProgressAt[0] = now;
+                                post(listener, new Progress(counter.getCount(), total));
+                            }
+                        }, writer);
+                // по индексу contentHash; решает получатель — текст пока только во временных файлах
+                int duplicateOf = repository.findBookIdByContentHash(book.contentHash);
+                result = new Result(book, writer, null, false, duplicateOf);
+                text = null; // теперь им владеет результат
+            }
+        } catch (Fb2FormatException e) {
+            result = Result.failed(e.getMessage());
+        } catch (IOException | XmlPullParserException | RuntimeException e) {
+            result = Result.failed("Ошибка парсинга FB2: " + e.getMessage());
+        } finally {
+            if (text != null) text.close();
+        }
+
+        if (cancelled.get()) {
+            if (result.text != null) result.text.close();
+            result = new Result(null, null, null, true, 0);
+        }
+
+        Result finished = result;
+        mainHandler.post(() -> listener.onFinished(finished));
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled.get()) throw new InterruptedIOException("Загрузка отменена");
+    }
+
+    private void post(Listener listener, Progress progress) {
+        mainHandler.post(() -> listener.onProgress(progress));
+    }
+
+    // -1 — провайдер размер не сообщает
+    private long querySize(Uri uri) {
+        try (Cursor c = resolver.query(uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (c != null && c.moveToFirst() && !c.isNull(0)) return c.getLong(0);
+        } catch (RuntimeException ignored) {
+            // не у всех провайдеров есть OpenableColumns
+        }
+        return -1;
+    }
+}
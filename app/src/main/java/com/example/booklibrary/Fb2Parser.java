@@ -1,122 +1,329 @@
 package com.example.booklibrary;
 
-import android.content.Context;
-import android.net.Uri;
 import android.util.Xml;
-import android.widget.Toast;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public class Fb2Parser {
 
-    private final Context context;
+    // Только статические методы: разбор без UI, вызывать из фонового потока (см. Fb2Import)
+    private Fb2Parser() { }
 
-    public Fb2Parser(Context context) {
-        this.context = context;
+    /**
+     * Получатель абзацев текста по мере разбора: текст книги целиком
+     * в памяти не собирается (например, сразу пишется в BookTextStore.Writer).
+     */
+    public interface ParagraphSink {
+        void onParagraph(String paragraph) throws IOException;
     }
 
     /**
-     * Парсит FB2-файл и возвращает ParsedBook:
-     *  - title      — название (<book-title>)
-     *  - author     — автор (first-name + middle-name + last-name)
-     *  - genre      — жанр (<genre>)
-     *  - fullText   — текст (параграфы <p> из <body>)
-     *  - dateString — строка из <date> (для вычисления года)
+     * Получатель картинок <binary>: поток для декодированных байтов (парсер его закроет)
+     * или null — картинку пропустить. cover — это обложка из <coverpage>.
+     */
+    public interface BinarySink {
+        OutputStream openBinary(String id, String contentType, boolean cover) throws IOException;
+    }
+
+    // FB2 или .fb2.zip (первая книга архива): архив распознаётся по сигнатуре
+    // и читается потоком, без распаковки на диск
+    public static ParsedBook parseBookOrArchive(BufferedInputStream inputStream, ParagraphSink sink,
+                                                BinarySink binaries)
+            throws IOException, XmlPullParserException, Fb2FormatException {
+        if (!Fb2Archive.looksLikeZip(inputStream)) {
+            return parse(inputStream, sink, binaries);
+        }
+        InputStream entry = Fb2Archive.openFirstBook(inputStream);
+        if (entry == null) {
+            throw new Fb2FormatException("В архиве нет книг FB2");
+        }
+        return parse(entry, sink, binaries);
+    }
+
+    public static ParsedBook parse(InputStream inputStream, ParagraphSink sink)
+            throws IOException, XmlPullParserException, Fb2FormatException {
+        return parse(Xml.newPullParser(), inputStream, sink, null);
+    }
+
+    public static ParsedBook parse(InputStream inputStream, ParagraphSink sink, BinarySink binaries)
+            throws IOException, XmlPullParserException, Fb2FormatException {
+        return parse(Xml.newPullParser(), inputStream, sink, binaries);
+    }
+
+    // Только <description>: разбор останавливается на первом <body>, текст не читается.
+    // Для регистрации книг без текста (он подгружается при первом открытии)
+    public static ParsedBook scanMetadata(InputStream inputStream)
+            throws IOException, XmlPullParserException, Fb2FormatException {
+        return scanMetadata(Xml.newPullParser(), inputStream);
+    }
+
+    public static ParsedBook scanMetadata(XmlPullParser parser, InputStream inputStream)
+            throws IOException, XmlPullParserException, Fb2FormatException {
+
+        ParsedBook result = new ParsedBook();
+
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+        parser.setInput(inputStream, "UTF-8");
+
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                if ("description".equals(parser.getName())) {
+                    readDescription(parser, result);
+                } else if ("body".equals(parser.getName())) {
+                    break;
+                }
+            }
+            eventType = parser.next();
+        }
+
+        checkTitle(result);
+        return result;
+    }
+
+    /**
+     * Потоковый разбор FB2. В ParsedBook — метаданные из <description> (см. readDescription).
+     * Параграфы <p> из <body> уходят в sink по одному, в памяти держится
+     * только текущий; по ним же считается contentHash. <binary> декодируются из base64
+     * потоком прямо в binaries (null — картинки не нужны). Без UI — можно вызывать из любого потока, в том числе
+     * параллельно. parser передаётся снаружи, чтобы разбор работал и вне Android.
      */
-    public ParsedBook parseBook(Uri uri) {
+    public static ParsedBook parse(XmlPullParser parser, InputStream inputStream, ParagraphSink sink,
+                                   BinarySink binaries)
+            throws IOException, XmlPullParserException, Fb2FormatException {
+
         ParsedBook result = new ParsedBook();
-        StringBuilder fullText = new StringBuilder();
+        MessageDigest digest = newContentDigest();
+
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+        parser.setInput(inputStream, "UTF-8");
 
-        try (InputStream inputStream =
-                     context.getContentResolver().openInputStream(uri)) {
+        int eventType = parser.getEventType();
+        boolean inBody = false;
 
-            if (inputStream == null) {
-                Toast.makeText(context, "Не удаётся открыть файл", Toast.LENGTH_SHORT).show();
-                return null;
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                switch (parser.getName()) {
+                    case "description":
+                        readDescription(parser, result);
+                        break;
+
+                    case "body":
+                        inBody = true;
+                        break;
+
+                    // --- основной текст ---
+                    case "p":
+                        if (inBody) {
+                            String paragraph = readSimpleText(parser);
+                            if (!paragraph.isEmpty()) {
+                                sink.onParagraph(paragraph);
+                                result.paragraphCount++;
+                                digest.update(paragraph.getBytes(StandardCharsets.UTF_8));
+                                digest.update((byte) '\n');
+                            }
+                        }
+                        break;
+
+                    case "binary":
+                        if (binaries != null) readBinary(parser, result, binaries);
+                        break;
+                }
+
+            } else if (eventType == XmlPullParser.END_TAG) {
+                if ("body".equals(parser.getName())) {
+                    inBody = false;
+                }
             }
 
-            XmlPullParser parser = Xml.newPullParser();
-            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
-            parser.setInput(inputStream, "UTF-8");
+            eventType = parser.next();
+        }
+
+        checkTitle(result);
+
+        if (result.paragraphCount == 0) {
+            throw new Fb2FormatException("Текст книги пустой или повреждён");
+        }
+        result.contentHash = toHex(digest.digest());
+
+        return result;
+    }
 
-            int eventType = parser.getEventType();
-            boolean inBody = false;
+    // SHA-256 по тексту абзацев (UTF-8, через '\n'): не зависит от кодировки файла,
+    // разметки, картинок и упаковки в zip — одна и та же книга из разных сборников совпадает
+    private static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
 
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                if (eventType == XmlPullParser.START_TAG) {
-                    String name = parser.getName();
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
 
+    private static void checkTitle(ParsedBook result) throws Fb2FormatException {
+        if (result.title == null || result.title.trim().isEmpty()) {
+            throw new Fb2FormatException("Не удалось найти название книги в FB2");
+        }
+    }
+
+    /**
+     * <description> целиком (курсор на START_TAG). Берётся только <title-info>:
+     *  - title      — название (<book-title>)
+     *  - author     — авторы через запятую (first-name + middle-name + last-name)
+     *  - genre      — первый <genre>
+     *  - dateString — строка из <date> (для вычисления года)
+     *  - annotation — текст <annotation>
+     *  - coverId    — id картинки обложки из <coverpage>
+     * У <document-info> свой <author> — автор файла, а не книги.
+     */
+    private static void readDescription(XmlPullParser parser, ParsedBook result)
+            throws IOException, XmlPullParserException {
+
+        int depth = parser.getDepth();
+        boolean inTitleInfo = false;
+        StringBuilder authors = new StringBuilder();
+        int eventType = parser.next();
+
+        while (!(eventType == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+            if (eventType == XmlPullParser.START_TAG) {
+                String name = parser.getName();
+                if ("title-info".equals(name)) {
+                    inTitleInfo = true;
+                } else if (inTitleInfo) {
                     switch (name) {
-                        // --- метаданные ---
                         case "book-title":
                             result.title = readSimpleText(parser);
                             break;
 
                         case "author":
-                            result.author = parseAuthor(parser);
+                            String author = parseAuthor(parser);
+                            if (!author.isEmpty()) {
+                                if (authors.length() > 0) authors.append(", ");
+                                authors.append(author);
+                            }
                             break;
 
                         case "genre":
-                            result.genre = readSimpleText(parser);
+                            if (result.genre == null) result.genre = readSimpleText(parser);
                             break;
 
                         case "date":
                             result.dateString = readSimpleText(parser);
                             break;
 
-                        case "body":
-                            inBody = true;
+                        case "annotation":
+                            result.annotation = readAllText(parser);
                             break;
 
-                        // --- основной текст ---
-                        case "p":
-                            if (inBody) {
-                                String paragraph = readSimpleText(parser);
-                                if (!paragraph.isEmpty()) {
-                                    fullText.append(paragraph).append("\n\n");
-                                }
-                            }
+                        case "coverpage":
+                            result.coverId = readCoverId(parser);
                             break;
                     }
+                }
+            } else if (eventType == XmlPullParser.END_TAG && "title-info".equals(parser.getName())) {
+                inTitleInfo = false;
+            }
+
+            eventType = parser.next();
+        }
+
+        if (authors.length() > 0) result.author = authors.toString();
+    }
+
+    // <coverpage><image l:href="#cover.jpg"/></coverpage> (курсор на START_TAG) -> "cover.jpg".
+    // Префикс пространства имён у href бывает любой, а разбор идёт без пространств имён
+    private static String readCoverId(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
+
+        String id = null;
+        int depth = parser.getDepth();
+        int eventType = parser.next();
 
-                } else if (eventType == XmlPullParser.END_TAG) {
-                    if ("body".equals(parser.getName())) {
-                        inBody = false;
+        while (!(eventType == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+            if (eventType == XmlPullParser.START_TAG && "image".equals(parser.getName()) && id == null) {
+                for (int i = 0; i < parser.getAttributeCount(); i++) {
+                    String name = parser.getAttributeName(i);
+                    String value = parser.getAttributeValue(i);
+                    if ((name.equals("href") || name.endsWith(":href")) && value.startsWith("#")) {
+                        id = value.substring(1);
                     }
                 }
-
-                eventType = parser.next();
             }
+            eventType = parser.next();
+        }
+        return id;
+    }
 
-            result.fullText = fullText.toString().trim();
+    // <binary id=".." content-type="..">base64</binary> (курсор на START_TAG): текст берётся
+    // из буфера парсера через getTextCharacters и декодируется сразу в поток получателя
+    private static void readBinary(XmlPullParser parser, ParsedBook result, BinarySink binaries)
+            throws IOException, XmlPullParserException {
 
-            // Проверки
-            if (result.title == null || result.title.trim().isEmpty()) {
-                Toast.makeText(context, "Не удалось найти название книги в FB2", Toast.LENGTH_SHORT).show();
-                return null;
-            }
+        String id = parser.getAttributeValue(null, "id");
+        String contentType = parser.getAttributeValue(null, "content-type");
+        OutputStream out = id != null
+                ? binaries.openBinary(id, contentType, id.equals(result.coverId))
+                : null;
+        if (out == null) {
+            skipTag(parser);
+            return;
+        }
 
-            if (result.fullText.isEmpty()) {
-                Toast.makeText(context, "Текст книги пустой или повреждён", Toast.LENGTH_SHORT).show();
-                // можно всё равно вернуть метаданные, если хочешь:
-                // return result;
-                return null;
+        try (OutputStream target = out) {
+            Base64Decoder decoder = new Base64Decoder(target);
+            int[] range = new int[2];
+            int eventType = parser.next();
+            while (eventType != XmlPullParser.END_TAG) {
+                if (eventType == XmlPullParser.TEXT) {
+                    char[] chars = parser.getTextCharacters(range);
+                    decoder.write(chars, range[0], range[1]);
+                }
+                eventType = parser.next();
             }
+            decoder.finish();
+        }
+        result.binaryCount++;
+    }
+
+    // Весь текст элемента с вложенными (курсор на START_TAG); абзацы — через перевод строки
+    private static String readAllText(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
 
-            return result;
+        StringBuilder text = new StringBuilder();
+        int depth = parser.getDepth();
+        int eventType = parser.next();
 
-        } catch (IOException | XmlPullParserException e) {
-            Toast.makeText(context, "Ошибка парсинга FB2: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-            return null;
+        while (!(eventType == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+            if (eventType == XmlPullParser.TEXT) {
+                text.append(parser.getText());
+            } else if (eventType == XmlPullParser.END_TAG && "p".equals(parser.getName())) {
+                text.append('\n');
+            }
+            eventType = parser.next();
         }
+        return text.toString().trim();
     }
 
     // Читает <tag>текст</tag>, когда курсор стоит на START_TAG
-    private String readSimpleText(XmlPullParser parser)
+    private static String readSimpleText(XmlPullParser parser)
             throws IOException, XmlPullParserException {
 
         String result = "";
@@ -129,7 +336,7 @@ public class Fb2Parser {
     }
 
     // Парсит <author>...</author>
-    private String parseAuthor(XmlPullParser parser)
+    private static String parseAuthor(XmlPullParser parser)
             throws IOException, XmlPullParserException {
 
         StringBuilder author = new StringBuilder();
@@ -165,7 +372,7 @@ public class Fb2Parser {
     }
 
     // Пропускает текущий тег целиком вместе с вложенными (курсор на START_TAG)
-    private void skipTag(XmlPullParser parser)
+    private static void skipTag(XmlPullParser parser)
             throws IOException, XmlPullParserException {
 
         int depth = 1;
@@ -0,0 +1,36 @@
+package com.example.booklibrary;
+
+/**
+ * Строит выражение для FTS MATCH из пользовательского ввода:
+ * каждое слово превращается в префиксный запрос "слово*", слова объединяются по И.
+ * Всё, кроме букв и цифр, выбрасывается, чтобы ввод не ломал синтаксис MATCH.
+ */
+public final class FtsQuery {
+
+    private FtsQuery() { }
+
+    // null — в запросе нет ни одного слова
+    public static String prefix(String input) {
+        return prefix(input, null);
+    }
+
+    // column != null — искать только в этой колонке ("title:слово*")
+    public static String prefix(String input, String column) {
+        if (input == null) return null;
+
+        StringBuilder match = new StringBuilder();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= input.length(); i++) {
+            char c = i < input.length() ? input.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (token.length() > 0) {
+                if (match.length() > 0) match.append(' ');
+                if (column != null) match.append(column).append(':');
+                match.append(token).append('*');
+                token.setLength(0);
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+}
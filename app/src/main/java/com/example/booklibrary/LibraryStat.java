@@ -0,0 +1,40 @@
+package com.example.booklibrary;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Одно значение статистики библиотеки. Таблицу ведут триггеры на books
+ * (см. AppDatabase.createLibraryStatsTriggers), приложение её только читает.
+ */
+@Entity(tableName = "library_stats")
+public class LibraryStat {
+
+    public static final String KEY_TOTAL = "total";
+    public static final String KEY_RATING_SUM = "rating_sum";     // сумма оценок прочитанных (rating > 0)
+    public static final String KEY_RATING_COUNT = "rating_count";
+    public static final String PREFIX_STATUS = "status:";         // status:read, status:reading, ...
+    public static final String PREFIX_READ_YEAR = "read_year:";   // read_year:2025 — прочитано за год
+    public static final String PREFIX_READ_MONTH = "read_month:"; // read_month:2025-03
+    // ';' идёт сразу за ':' — граница диапазона ключей read_month:* для поиска по первичному ключу
+    public static final String PREFIX_READ_MONTH_END = "read_month;";
+
+    @PrimaryKey
+    @NonNull
+    private String statKey;
+
+    private double value;
+
+    public LibraryStat(@NonNull String statKey, double value) {
+        this.statKey = statKey;
+        this.value = value;
+    }
+
+    @NonNull
+    public String getStatKey() { return statKey; }
+    public void setStatKey(@NonNull String statKey) { this.statKey = statKey; }
+
+    public double getValue() { return value; }
+    public void setValue(double value) { this.value = value; }
+}
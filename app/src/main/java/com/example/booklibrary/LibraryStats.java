@@ -0,0 +1,43 @@
+package com.example.booklibrary;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Статистика библиотеки, собранная из строк library_stats.
+ */
+public class LibraryStats {
+
+    private final Map<String, Double> values = new HashMap<>();
+
+    public LibraryStats(List<LibraryStat> rows) {
+        if (rows == null) return;
+        for (LibraryStat row : rows) {
+            values.put(row.getStatKey(), row.getValue());
+        }
+    }
+
+    private int count(String key) {
+        Double v = values.get(key);
+        return v != null ? (int) Math.round(v) : 0;
+    }
+
+    public int getTotalBooks() {
+        return count(LibraryStat.KEY_TOTAL);
+    }
+
+    public int getCountByStatus(String status) {
+        return count(LibraryStat.PREFIX_STATUS + status);
+    }
+
+    public int getReadCountForYear(int year) {
+        return count(LibraryStat.PREFIX_READ_YEAR + year);
+    }
+
+    public float getAverageRating() {
+        int n = count(LibraryStat.KEY_RATING_COUNT);
+        Double sum = values.get(LibraryStat.KEY_RATING_SUM);
+        return (n > 0 && sum != null) ? (float) (sum / n) : 0f;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.booklibrary;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface LibraryStatsDao {
+
+    // Несколько строк независимо от размера библиотеки; меняются только вместе с ними
+    @Query("SELECT * FROM library_stats")
+    LiveData<List<LibraryStat>> getAll();
+
+    // Вся история по месяцам одним проходом по диапазону первичного ключа
+    @Query("SELECT * FROM library_stats WHERE statKey >= '" + LibraryStat.PREFIX_READ_MONTH
+            + "' AND statKey < '" + LibraryStat.PREFIX_READ_MONTH_END + "' ORDER BY statKey")
+    LiveData<List<LibraryStat>> getReadMonths();
+}
@@ -93,6 +93,15 @@ public class MainActivity extends BaseActivity {
     public boolean onOptionsItemSelected(@NonNull android.view.MenuItem item) {
         int id = item.getItemId();
 
+        if (id == R.id.menuTextSearch) {
+            startActivity(new Intent(this, TextSearchActivity.class));
+            return true;
+        }
+        if (id == R.id.menuImportFolder) {
+            startActivity(new Intent(this, BulkImportActivity.class));
+            return true;
+        }
+
         // сортировка
         if (id == R.id.menuSortTitle) {
             viewModel.sortByTitle();
@@ -0,0 +1,115 @@
+package com.example.booklibrary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Карта страниц книги для одной разметки: начало каждой страницы, по порядку с первой.
+ * Строится постепенно (PageReader) и хранится на диске — при следующем открытии
+ * книги с той же разметкой не пересчитывается.
+ *
+ * Позиция в тексте — long: блок в старших 32 битах, смещение символа в блоке в младших;
+ * позиции сравниваются как числа. Потокобезопасна: пишет фоновый поток, читает UI.
+ */
+final class PageMap {
+
+    // Меняется вместе с форматом файла или правилами раскладки (Paginator)
+    private static final int FORMAT = 1;
+
+    static long position(int block, int offset) {
+        return ((long) block << 32) | (offset & 0xffffffffL);
+    }
+
+    static int blockOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    private long[] starts = new long[256];
+    private int count;
+    private long next;          // начало следующей ещё не разложенной страницы
+    private boolean complete;   // разложена вся книга
+
+    synchronized int size() {
+        return count;
+    }
+
+    synchronized boolean isComplete() {
+        return complete;
+    }
+
+    synchronized long next() {
+        return next;
+    }
+
+    synchronized long start(int page) {
+        return starts[page];
+    }
+
+    // Страница с началом next() разложена и кончается на end
+    synchronized void append(long end, boolean last) {
+        if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+        starts[count++] = next;
+        next = end;
+        complete = last;
+    }
+
+    // Номер страницы, на которую попадает позиция; -1 — карта до неё ещё не дошла
+    synchronized int pageOf(long position) {
+        if (count == 0 || (!complete && position >= next)) return -1;
+        int i = Arrays.binarySearch(starts, 0, count, position);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    // Битый или чужой файл — карта остаётся пустой и строится заново
+    synchronized void read(File file) {
+        if (!file.isFile()) return;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT) return;
+            int n = in.readInt();
+            boolean done = in.readBoolean();
+            long last = in.readLong();
+            long[] read = new long[Math.max(256, n)];
+            for (int i = 0; i < n; i++) read[i] = in.readLong();
+
+            starts = read;
+            count = n;
+            next = last;
+            complete = done;
+        } catch (IOException ignored) {
+            // карта — только кэш
+        }
+    }
+
+    // Через временный файл: прерванная запись не оставит полкарты
+    synchronized void write(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Не удаётся создать каталог " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT);
+            out.writeInt(count);
+            out.writeBoolean(complete);
+            out.writeLong(next);
+            for (int i = 0; i < count; i++) out.writeLong(starts[i]);
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Не удаётся сохранить " + file);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.booklibrary;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Постраничный режим читалки: раскладка страниц и карта страниц книги в фоне.
+ *
+ * Соседние страницы раскладываются заранее, поэтому листание берёт готовую страницу
+ * из кэша. Карта страниц (номер → позиция) строится по порядку на AHEAD_PAGES вперёд
+ * от читателя и сохраняется на диск для этой версии текста и разметки. Переход
+ * на страницу дальше карты не ждёт раскладки предыдущих: позиция оценивается по доле
+ * байтов текста, и номер такой страницы приблизительный, пока карта до неё не дойдёт.
+ * Все методы — из UI-потока, колбэки — тоже в UI-потоке.
+ */
+final class PageReader {
+
+    private static final String TAG = "PageReader";
+
+    public interface Callback {
+        void onPage(Paginator.Page page);
+    }
+
+    // На сколько страниц карта строится впереди читателя
+    static final int AHEAD_PAGES = 20;
+    // Страниц за одну фоновую задачу: между ними успевают задачи листания
+    private static final int MAP_CHUNK = 8;
+    // Сколько новых страниц карты копится до записи на диск
+    private static final int SAVE_EVERY = 200;
+    // По ним оценивается средний объём страницы для перехода дальше карты
+    private static final int MIN_SAMPLE_PAGES = 8;
+    private static final int CACHED_PAGES = 5;
+
+    private final BookText text;
+    private final Paginator paginator;
+    private final PageMap map = new PageMap();
+    private final File mapFile;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // UI-поток: готовые страницы по началу и известные начала предыдущих страниц
+    private final LruCache<Long, Paginator.Page> pages = new LruCache<>(CACHED_PAGES);
+    private final Map<Long, Long> previous = new HashMap<>();
+    private final Set<Long> pending = new HashSet<>();
+    private volatile boolean released;
+
+    // Фоновый поток
+    private volatile int wantedPages = AHEAD_PAGES;
+    private boolean extending;   // цепочка задач extendMapChunk уже идёт
+    private int savedPages;
+
+    PageReader(BookText text, Paginator.Spec spec, File mapFile) {
+        this.text = text;
+        this.paginator = new Paginator(text, spec);
+        this.mapFile = mapFile;
+        executor.execute(() -> {
+            map.read(mapFile);
+            savedPages = map.size();
+        });
+        scheduleMap();
+    }
+
+    // Страница, на которую попадает позиция: по карте, если она уже дошла, иначе — с самой позиции
+    void open(long position, Callback callback) {
+        executor.execute(() -> {
+            int page = map.pageOf(position);
+            long start = page >= 0 ? map.start(page) : position;
+            Paginator.Page result = paginator.layoutPage(start);
+            post(() -> deliver(result, callback));
+        });
+    }
+
+    void next(Paginator.Page current, Callback callback) {
+        if (current.last) return;
+        previous.put(current.end, current.start);
+        show(current.end, callback);
+    }
+
+    void previous(Paginator.Page current, Callback callback) {
+        long start = knownPrevious(current.start);
+        if (start >= 0) {
+            show(start, callback);
+            return;
+        }
+        if (current.start == 0) return;
+        executor.execute(() -> {
+            long found = paginator.previousStart(current.start);
+            if (found < 0) return;
+            Paginator.Page result = paginator.layoutPage(found);
+            post(() -> {
+                previous.put(current.start, found);
+                deliver(result, callback);
+            });
+        });
+    }
+
+    // page — с нуля. Дальше карты — по оценке, без раскладки страниц до неё
+    void goToPage(int page, Callback callback) {
+        executor.execute(() -> {
+            long start;
+            if (page < map.size()) {
+                start = map.start(page);
+            } else if (map.isComplete()) {
+                start = map.start(map.size() - 1);
+            } else {
+                if (map.size() < MIN_SAMPLE_PAGES) extendMap(MIN_SAMPLE_PAGES);
+                start = PageMap.position(text.blockAtByte((long) page * bytesPerPage()), 0);
+            }
+            Paginator.Page result = paginator.layoutPage(start);
+            post(() -> deliver(result, callback));
+        });
+    }
+
+    // Номер страницы с нуля по карте; -1 — карта до неё ещё не дошла
+    int exactPage(long position) {
+        return map.pageOf(position);
+    }
+
+    int estimatedPage(long position) {
+        return (int) (byteOffset(position) / bytesPerPage());
+    }
+
+    // Точное число страниц, когда разложена вся книга, иначе оценка
+    int pageCount() {
+        if (map.isComplete()) return map.size();
+        return (int) Math.max(map.size(), totalBytes() / bytesPerPage() + 1);
+    }
+
+    boolean isPageCountExact() {
+        return map.isComplete();
+    }
+
+    int percentOf(long position) {
+        long total = totalBytes();
+        return total > 0 ? (int) Math.min(100, byteOffset(position) * 100 / total) : 0;
+    }
+
+    void release() {
+        released = true;
+        pages.evictAll();
+        executor.execute(this::saveMap);
+        executor.shutdown();
+    }
+
+    private void show(long start, Callback callback) {
+        Paginator.Page cached = pages.get(start);
+        if (cached != null) {
+            deliver(cached, callback);
+            return;
+        }
+        executor.execute(() -> {
+            Paginator.Page result = paginator.layoutPage(start);
+            post(() -> deliver(result, callback));
+        });
+    }
+
+    private void deliver(Paginator.Page page, Callback callback) {
+        pages.put(page.start, page);
+        callback.onPage(page);
+        prefetchAround(page);
+
+        int number = exactPage(page.start);
+        if (number < 0) number = estimatedPage(page.start);
+        int wanted = number + AHEAD_PAGES;
+        if (wanted > wantedPages) {
+            wantedPages = wanted;
+            scheduleMap();
+        }
+    }
+
+    // Следующая и предыдущая страницы — в кэш, чтобы листание не ждало раскладки
+    private void prefetchAround(Paginator.Page page) {
+        if (!page.last) prefetch(page.end, -1);
+        long before = knownPrevious(page.start);
+        if (before >= 0) {
+            prefetch(before, -1);
+        } else if (page.start != 0) {
+            prefetch(-1, page.start);
+        }
+    }
+
+    // start >= 0 — раскладка страницы с этого начала; иначе — страницы перед before
+    private void prefetch(long start, long before) {
+        long key = start >= 0 ? start : -before - 1;
+        if (pages.get(start) != null || !pending.add(key)) return;
+        executor.execute(() -> {
+            long from = start >= 0 ? start : paginator.previousStart(before);
+            Paginator.Page result = from >= 0 ? paginator.layoutPage(from) : null;
+            post(() -> {
+                pending.remove(key);
+                if (result == null) return;
+                if (start < 0) previous.put(before, result.start);
+                pages.put(result.start, result);
+            });
+        });
+    }
+
+    private long knownPrevious(long start) {
+        Long known = previous.get(start);
+        if (known != null) return known;
+        int page = map.pageOf(start);
+        if (page > 0 && map.start(page) == start) return map.start(page - 1);
+        return -1;
+    }
+
+    private void scheduleMap() {
+        executor.execute(() -> {
+            if (extending) return;
+            extending = true;
+            extendMapChunk();
+        });
+    }
+
+    // Кусок карты за задачу, дальше — новой задачей в конец очереди
+    private void extendMapChunk() {
+        if (released) {
+            extending = false;
+            return;
+        }
+        extendMap(Math.min(wantedPages, map.size() + MAP_CHUNK));
+        if (map.isComplete() || map.size() - savedPages >= SAVE_EVERY) saveMap();
+        if (map.isComplete() || map.size() >= wantedPages) {
+            extending = false;
+            return;
+        }
+        try {
+            executor.execute(this::extendMapChunk);
+        } catch (RejectedExecutionException e) {
+            extending = false;  // release() уже остановил поток
+        }
+    }
+
+    private void extendMap(int target) {
+        while (!map.isComplete() && map.size() < target) {
+            Paginator.Page page = paginator.layoutPage(map.next());
+            map.append(page.end, page.last);
+        }
+    }
+
+    private void saveMap() {
+        if (map.size() == savedPages) return;
+        try {
+            map.write(mapFile);
+            savedPages = map.size();
+        } catch (IOException e) {
+            Log.w(TAG, "Не удалось сохранить карту страниц", e);
+        }
+    }
+
+    // Средний объём страницы в байтах по уже разложенной части карты
+    private long bytesPerPage() {
+        int n = map.size();
+        if (n == 0) return Math.max(1, totalBytes());
+        return Math.max(1, byteOffset(map.next()) / n);
+    }
+
+    // С точностью до блока: для оценок и процента этого хватает
+    private long byteOffset(long position) {
+        return text.getByteOffset(Math.min(PageMap.blockOf(position), text.getBlockCount()));
+    }
+
+    private long totalBytes() {
+        return text.getByteOffset(text.getBlockCount());
+    }
+
+    private void post(Runnable action) {
+        mainHandler.post(() -> {
+            if (!released) action.run();
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.booklibrary;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Страница постраничного режима: рисует куски раскладок из Paginator.Page, ничего
+ * не измеряя сама. Тап по правой трети или свайп влево — следующая страница,
+ * по левой трети или свайп вправо — предыдущая.
+ */
+public class PageView extends View {
+
+    public interface Listener {
+        void onNextPage();
+
+        void onPreviousPage();
+    }
+
+    private final GestureDetector gestures;
+    private Paginator.Page page;
+    private Listener listener;
+
+    public PageView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        gestures = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(@NonNull MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapUp(@NonNull MotionEvent e) {
+                if (e.getX() > getWidth() * 2 / 3f) {
+                    next();
+                } else if (e.getX() < getWidth() / 3f) {
+                    previous();
+                } else {
+                    performClick();
+                }
+                return true;
+            }
+
+            @Override
+            public boolean onFling(@Nullable MotionEvent e1, @NonNull MotionEvent e2, float vx, float vy) {
+                if (Math.abs(vx) <= Math.abs(vy)) return false;
+                if (vx < 0) next(); else previous();
+                return true;
+            }
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    void setPage(Paginator.Page page) {
+        this.page = page;
+        invalidate();
+    }
+
+    // Место под текст страницы — для Paginator.Spec
+    int getContentWidth() {
+        return getWidth() - getPaddingLeft() - getPaddingRight();
+    }
+
+    int getContentHeight() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        if (page == null) return;
+        for (Paginator.Slice slice : page.slices) {
+            int top = slice.layout.getLineTop(slice.fromLine);
+            int bottom = slice.layout.getLineTop(slice.toLine);
+            canvas.save();
+            canvas.translate(getPaddingLeft(), getPaddingTop() + slice.y - top);
+            canvas.clipRect(0, top, slice.layout.getWidth(), bottom);
+            slice.layout.draw(canvas);
+            canvas.restore();
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return gestures.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    private void next() {
+        if (listener != null) listener.onNextPage();
+    }
+
+    private void previous() {
+        if (listener != null) listener.onPreviousPage();
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.booklibrary;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+import android.widget.TextView;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Раскладка текста книги на страницы через StaticLayout: ширина и высота страницы,
+ * шрифт, межстрочный интервал и отступ между абзацами — как у блока читалки.
+ * Страница режется по строкам, абзац может переходить на следующую страницу.
+ * Только из одного фонового потока (PageReader): держит кэш раскладок блоков.
+ */
+final class Paginator {
+
+    private static final int CACHED_LAYOUTS = 16;
+
+    // Образцы для отпечатка шрифта в Spec.key(): узкие и широкие знаки, латиница и кириллица
+    private static final String[] FONT_SAMPLES = {
+            "iIl1.,;:'", "MWmw@%", "The quick brown fox jumps over the lazy dog",
+            "Съешь же ещё этих мягких французских булок, да выпей чаю", "ЖШЩЮЯжшщюя"
+    };
+
+    /** Параметры разметки страницы; key() — имя карты страниц на диске. */
+    static final class Spec {
+        final TextPaint paint;
+        final int width;
+        final int height;
+        final float spacingAdd;
+        final float spacingMult;
+        final int paragraphSpacing;
+        final boolean includePad;
+        final int breakStrategy;
+        final int hyphenation;
+
+        private Spec(TextView sample, int width, int height) {
+            paint = new TextPaint(sample.getPaint());
+            // цвет TextView ставит краске только при отрисовке
+            paint.setColor(sample.getCurrentTextColor());
+            this.width = width;
+            this.height = height;
+            spacingAdd = sample.getLineSpacingExtra();
+            spacingMult = sample.getLineSpacingMultiplier();
+            paragraphSpacing = sample.getPaddingTop() + sample.getPaddingBottom();
+            includePad = sample.getIncludeFontPadding();
+            breakStrategy = sample.getBreakStrategy();
+            hyphenation = sample.getHyphenationFrequency();
+        }
+
+        // sample — TextView из item_reader_block; width и height — место под текст страницы
+        static Spec from(TextView sample, int width, int height) {
+            return new Spec(sample, width, height);
+        }
+
+        // SHA-256 всей разметки: при совпадении ключа чужая карта страниц дала бы
+        // неверные номера. У Typeface нет устойчивого имени, поэтому шрифт описывают
+        // стиль, вес, метрики и ширины образца — то, от чего зависит раскладка
+        String key() {
+            Typeface typeface = paint.getTypeface() != null ? paint.getTypeface() : Typeface.DEFAULT;
+            Paint.FontMetrics metrics = paint.getFontMetrics();
+            StringBuilder s = new StringBuilder()
+                    .append(width).append('x').append(height)
+                    .append('/').append(paint.getTextSize()).append('/').append(paint.getTextScaleX())
+                    .append('/').append(paint.getLetterSpacing()).append('/').append(paint.getTextSkewX())
+                    .append('/').append(paint.getFontFeatureSettings()).append('/').append(paint.getTextLocales())
+                    .append('/').append(typeface.getStyle())
+                    .append('/').append(Build.VERSION.SDK_INT >= 28 ? typeface.getWeight() : 0)
+                    .append('/').append(metrics.top).append(',').append(metrics.ascent)
+                    .append(',').append(metrics.descent).append(',').append(metrics.bottom)
+                    .append(',').append(metrics.leading);
+            for (String sample : FONT_SAMPLES) {
+                s.append('/').append(paint.measureText(sample));
+            }
+            s.append('/').append(spacingAdd).append('/').append(spacingMult)
+                    .append('/').append(paragraphSpacing).append('/').append(includePad)
+                    .append('/').append(breakStrategy).append('/').append(hyphenation);
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] hash = digest.digest(s.toString().getBytes(StandardCharsets.UTF_8));
+                return String.format(Locale.ROOT, "%064x", new BigInteger(1, hash));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 недоступен", e);
+            }
+        }
+    }
+
+    /** Строки [fromLine, toLine) раскладки блока, на странице — с высоты y. */
+    static final class Slice {
+        final StaticLayout layout;
+        final int fromLine;
+        final int toLine;
+        final int y;
+
+        Slice(StaticLayout layout, int fromLine, int toLine, int y) {
+            this.layout = layout;
+            this.fromLine = fromLine;
+            this.toLine = toLine;
+            this.y = y;
+        }
+    }
+
+    /** Готовая к отрисовке страница. Позиции — PageMap.position. */
+    static final class Page {
+        final long start;
+        final long end;   // начало следующей страницы
+        final boolean last;
+        final List<Slice> slices;
+
+        Page(long start, long end, boolean last, List<Slice> slices) {
+            this.start = start;
+            this.end = end;
+            this.last = last;
+            this.slices = Collections.unmodifiableList(slices);
+        }
+    }
+
+    private final BookText text;
+    private final Spec spec;
+    private final LruCache<Integer, StaticLayout> layouts = new LruCache<>(CACHED_LAYOUTS);
+
+    Paginator(BookText text, Spec spec) {
+        this.text = text;
+        this.spec = spec;
+    }
+
+    Page layoutPage(long start) {
+        List<Slice> slices = new ArrayList<>();
+        int count = text.getBlockCount();
+        int block = PageMap.blockOf(start);
+        int offset = PageMap.offsetOf(start);
+        int y = 0;
+
+        while (block < count) {
+            StaticLayout layout = layout(block);
+            int lines = layout.getLineCount();
+            int from = offset == 0 ? 0 : layout.getLineForOffset(offset);
+            int top = layout.getLineTop(from);
+
+            int to = from;
+            while (to < lines && y + layout.getLineBottom(to) - top <= spec.height) to++;
+            // строка выше страницы (огромный шрифт) — всё равно по одной на страницу
+            if (to == from && slices.isEmpty()) to = from + 1;
+            if (to > from) slices.add(new Slice(layout, from, to, y));
+            if (to < lines) {
+                return new Page(start, PageMap.position(block, layout.getLineStart(to)), false, slices);
+            }
+
+            y += layout.getLineBottom(lines - 1) - top + spec.paragraphSpacing;
+            block++;
+            offset = 0;
+            if (y >= spec.height) break;
+        }
+        return new Page(start, PageMap.position(block, 0), block >= count, slices);
+    }
+
+    // Начало страницы перед start без карты: откатываемся на блоки выше с высотой
+    // хотя бы в страницу и раскладываем от них вперёд. -1 — start и так первая
+    long previousStart(long start) {
+        if (start == 0) return -1;
+        int block = PageMap.blockOf(start);
+        int offset = PageMap.offsetOf(start);
+
+        int height = 0;
+        if (offset > 0) {
+            StaticLayout layout = layout(block);
+            height = layout.getLineTop(layout.getLineForOffset(offset));
+        }
+        int from = block;
+        while (from > 0 && height < spec.height) {
+            from--;
+            height += layout(from).getHeight() + spec.paragraphSpacing;
+        }
+
+        long page = PageMap.position(from, 0);
+        long previous = page;
+        while (page < start) {
+            previous = page;
+            page = layoutPage(page).end;
+        }
+        return previous;
+    }
+
+    private StaticLayout layout(int block) {
+        StaticLayout layout = layouts.get(block);
+        if (layout != null) return layout;
+
+        String s = text.getBlock(block);
+        layout = StaticLayout.Builder.obtain(s, 0, s.length(), spec.paint, spec.width)
+                .setLineSpacing(spec.spacingAdd, spec.spacingMult)
+                .setIncludePad(spec.includePad)
+                .setBreakStrategy(spec.breakStrategy)
+                .setHyphenationFrequency(spec.hyphenation)
+                .build();
+        layouts.put(block, layout);
+        return layout;
+    }
+}
@@ -4,6 +4,20 @@ public class ParsedBook {
     public String title;
     public String author;
     public String genre;
-    public String fullText;     // полный текст книги
+    public int paragraphCount;  // сколько абзацев отдано в ParagraphSink (сам текст здесь не хранится)
     public String dateString;   // сырая строка из <date> (для года)
+    public String annotation;   // текст <annotation>; null — нет
+    public String coverId;      // id <binary> с обложкой; null — обложки нет
+    public int binaryCount;     // сколько картинок отдано в BinarySink
+    public String contentHash;  // SHA-256 текста абзацев (hex); null — текст не разбирался (scanMetadata)
+
+    // Год из начала <date> ("1869", "1869-01-01"); 0 — не удалось
+    public int getYear() {
+        if (dateString == null || dateString.length() < 4) return 0;
+        try {
+            return Integer.parseInt(dateString.substring(0, 4));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 }
@@ -3,7 +3,17 @@ package com.example.booklibrary;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-
+import android.text.InputType;
+import android.text.Layout;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -11,17 +21,13 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.appbar.MaterialToolbar;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class ReaderActivity extends AppCompatActivity {
 
     private static final String EXTRA_BOOK_ID = "bookid";
+    private static final String EXTRA_BLOCK_INDEX = "blockindex";
 
-    private BookViewModel viewModel;
-    private Book currentBook;
+    private ReaderViewModel viewModel;
 
     private MaterialToolbar toolbar;
     private RecyclerView recyclerView;
@@ -29,13 +35,26 @@ public class ReaderActivity extends AppCompatActivity {
 
     private ReaderBlocksAdapter adapter;
 
-    private final ExecutorService parserExecutor = Executors.newSingleThreadExecutor();
+    // Постраничный режим: движок создаётся, когда есть и текст, и размер страницы
+    private PageView pageView;
+    private boolean pageMode;
+    private PageReader pageReader;
+    private BookText pageText;
+    private String pageLayoutKey;
+    private Paginator.Page currentPage;
 
-    private String baseTitle;
+    private String baseTitle = "Читалка";
+    private ReaderViewModel.State shownState;
 
     public static void start(Context context, int bookId) {
+        start(context, bookId, -1);
+    }
+
+    // Открыть книгу сразу на блоке blockIndex (например, из поиска по тексту)
+    public static void start(Context context, int bookId, int blockIndex) {
         Intent intent = new Intent(context, ReaderActivity.class);
         intent.putExtra(EXTRA_BOOK_ID, bookId);
+        intent.putExtra(EXTRA_BLOCK_INDEX, blockIndex);
         context.startActivity(intent);
     }
 
@@ -47,19 +66,27 @@ public class ReaderActivity extends AppCompatActivity {
         initViews();
         setupToolbar();
         setupRecycler();
-        setupViewModel();
+        setupPages();
 
         int bookId = getIntent().getIntExtra(EXTRA_BOOK_ID, -1);
-        if (bookId != -1) {
-            loadBook(bookId);
-        } else {
+        if (bookId == -1) {
             finish();
+            return;
         }
+
+        // После поворота open() ничего не делает: окно блоков и позиция уже в ViewModel
+        viewModel = new ViewModelProvider(this).get(ReaderViewModel.class);
+        // после пересоздания процесса — на сохранённую позицию, а не снова на блок из поиска
+        int jump = savedInstanceState == null ? getIntent().getIntExtra(EXTRA_BLOCK_INDEX, -1) : -1;
+        viewModel.open(bookId, jump);
+        viewModel.getBook().observe(this, this::onBook);
+        viewModel.getState().observe(this, this::showState);
     }
 
     private void initViews() {
         toolbar = findViewById(R.id.toolbar);
         recyclerView = findViewById(R.id.recyclerViewReader);
+        pageView = findViewById(R.id.pageView);
     }
 
     private void setupToolbar() {
@@ -80,72 +107,108 @@ public class ReaderActivity extends AppCompatActivity {
         recyclerView.setItemAnimator(null); // чуть меньше дерганий на больших текстах
     }
 
-    private void setupViewModel() {
-        viewModel = new ViewModelProvider(this).get(BookViewModel.class);
-    }
+    private void setupPages() {
+        pageMode = ReaderPrefs.isPageMode(this);
+        recyclerView.setVisibility(pageMode ? View.GONE : View.VISIBLE);
+        pageView.setVisibility(pageMode ? View.VISIBLE : View.GONE);
 
-    private void loadBook(int bookId) {
-        viewModel.getBookById(bookId).observe(this, book -> {
-            if (book == null) {
-                finish();
-                return;
+        pageView.setListener(new PageView.Listener() {
+            @Override
+            public void onNextPage() {
+                if (pageReader != null && currentPage != null) pageReader.next(currentPage, ReaderActivity.this::showPage);
             }
 
-            currentBook = book;
-
-            baseTitle = (book.getTitle() == null || book.getTitle().trim().isEmpty())
-                    ? "Читалка"
-                    : book.getTitle().trim();
-
-            toolbar.setTitle(baseTitle);
-
-            String content = book.getContent();
-            if (content == null || content.trim().isEmpty()) {
-                adapter.setBlocks(new ArrayList<>());
-                toolbar.setTitle(baseTitle + " (нет текста)");
-                return;
+            @Override
+            public void onPreviousPage() {
+                if (pageReader != null && currentPage != null) pageReader.previous(currentPage, ReaderActivity.this::showPage);
             }
+        });
+        // размер страницы известен только после раскладки; поворот или мультиоконность — новая разметка
+        pageView.addOnLayoutChangeListener((v, l, t, r, b, oldL, oldT, oldR, oldB) -> {
+            if (r - l != oldR - oldL || b - t != oldB - oldT) startPageReader();
+        });
+    }
 
-            // Парсим текст в блоки на фоне (чтобы не фризило UI)
-            parserExecutor.execute(() -> {
-                List<String> blocks = splitToBlocks(content);
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_reader, menu);
+        return true;
+    }
 
-                runOnUiThread(() -> {
-                    adapter.setBlocks(blocks);
-                    restoreReadingPosition();
-                    updateToolbarPercent();
-                });
-            });
-        });
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.menuPageMode).setChecked(pageMode);
+        menu.findItem(R.id.menuGoToPage).setVisible(pageMode);
+        return super.onPrepareOptionsMenu(menu);
     }
 
-    private List<String> splitToBlocks(String text) {
-        String normalized = text.replace("\r\n", "\n").replace("\r", "\n").trim();
-        String[] parts = normalized.split("\\n{2,}"); // блоки разделяем пустыми строками
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.menuPageMode) {
+            setPageMode(!pageMode);
+            return true;
+        }
+        if (id == R.id.menuGoToPage) {
+            showGoToPageDialog();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
 
-        List<String> blocks = new ArrayList<>(parts.length);
-        for (String p : parts) {
-            String block = p.trim();
-            if (!block.isEmpty()) blocks.add(block);
+    private void onBook(Book book) {
+        if (book == null) {
+            finish();
+            return;
         }
+        baseTitle = (book.getTitle() == null || book.getTitle().trim().isEmpty())
+                ? "Читалка"
+                : book.getTitle().trim();
+        updateTitle();
+    }
 
-        // fallback: если вдруг нет пустых строк, режем по одной строке
-        if (blocks.isEmpty()) {
-            String[] lines = normalized.split("\\n");
-            for (String line : lines) {
-                String b = line.trim();
-                if (!b.isEmpty()) blocks.add(b);
+    // Новое окно блоков — новый текст (или новая активити после поворота): показываем
+    // и встаём на позицию. Смена только статуса окно не трогает
+    private void showState(ReaderViewModel.State state) {
+        boolean newWindow = shownState == null || shownState.window != state.window;
+        boolean wasError = shownState != null && shownState.status == ReaderViewModel.Status.ERROR;
+        shownState = state;
+        if (wasError && state.status != ReaderViewModel.Status.ERROR) toolbar.setSubtitle(null);
+        if (newWindow) {
+            adapter.setWindow(state.window);
+            if (pageMode) {
+                startPageReader();
+            } else if (state.window != null) {
+                restoreReadingPosition();
             }
         }
+        updateTitle();
+    }
 
-        return blocks;
+    private void updateTitle() {
+        ReaderViewModel.State state = shownState;
+        if (state == null || state.status == ReaderViewModel.Status.LOADING) {
+            toolbar.setTitle(baseTitle);
+        } else if (state.status == ReaderViewModel.Status.LOADING_SOURCE) {
+            toolbar.setTitle(baseTitle + " (загрузка текста…)");
+        } else if (state.status == ReaderViewModel.Status.NO_TEXT) {
+            toolbar.setTitle(baseTitle + " (нет текста)");
+        } else if (state.status == ReaderViewModel.Status.ERROR) {
+            toolbar.setTitle(baseTitle + " (текст не загружен)");
+            toolbar.setSubtitle(state.error);
+        } else {
+            ReadingProgress progress = viewModel.getProgress();
+            int percent = progress != null ? progress.getReaderPercent() : 0;
+            toolbar.setTitle(baseTitle + " (" + percent + "%)");
+        }
     }
 
     private void restoreReadingPosition() {
-        if (currentBook == null) return;
+        ReadingProgress progress = viewModel.getProgress();
+        if (progress == null) return;
 
-        final int pos = Math.max(0, Math.min(currentBook.getReaderPosition(), adapter.getBlocksCount() - 1));
-        final int offset = Math.max(0, currentBook.getReaderOffset());
+        final int pos = Math.max(0, Math.min(progress.getReaderPosition(), adapter.getBlocksCount() - 1));
+        final int offset = progress.getReaderOffset();
 
         recyclerView.post(() -> {
             if (adapter.getBlocksCount() <= 0) return;
@@ -153,8 +216,157 @@ public class ReaderActivity extends AppCompatActivity {
         });
     }
 
+    // Переключение режима — на то же место текста
+    private void setPageMode(boolean enabled) {
+        if (enabled == pageMode) return;
+        long position = pageMode ? pagePosition() : scrollPosition();
+        pageMode = enabled;
+        ReaderPrefs.setPageMode(this, enabled);
+        invalidateOptionsMenu();
+
+        recyclerView.setVisibility(enabled ? View.GONE : View.VISIBLE);
+        pageView.setVisibility(enabled ? View.VISIBLE : View.GONE);
+        if (position < 0) return;
+        if (enabled) {
+            viewModel.setPagePosition(position);
+            startPageReader();
+        } else {
+            releasePageReader();
+            scrollToPosition(position);
+            toolbar.setSubtitle(null);
+        }
+    }
+
+    // Движок страниц для текущего текста и размера страницы; тот же — не пересоздаётся
+    private void startPageReader() {
+        ReaderViewModel.State state = shownState;
+        if (!pageMode || state == null || state.text == null) {
+            releasePageReader();
+            return;
+        }
+        int width = pageView.getContentWidth();
+        int height = pageView.getContentHeight();
+        if (width <= 0 || height <= 0) return;  // ждём раскладки pageView
+
+        TextView sample = (TextView) LayoutInflater.from(this)
+                .inflate(R.layout.item_reader_block, recyclerView, false);
+        Paginator.Spec spec = Paginator.Spec.from(sample, width, height);
+        String key = spec.key();
+        if (pageReader != null && pageText == state.text && key.equals(pageLayoutKey)) return;
+
+        if (pageText != state.text) releasePageReader();  // новый текст: позиция — из сохранённой
+        long position = pagePosition();
+        releasePageReader();
+        if (position < 0 || PageMap.blockOf(position) >= state.text.getBlockCount()) position = 0;
+        pageText = state.text;
+        pageLayoutKey = key;
+        pageReader = new PageReader(state.text, spec, viewModel.getPageMapFile(key));
+        pageReader.open(position, this::showPage);
+    }
+
+    private void releasePageReader() {
+        if (pageReader != null) pageReader.release();
+        pageReader = null;
+        pageText = null;
+        pageLayoutKey = null;
+        currentPage = null;
+        pageView.setPage(null);
+    }
+
+    private void showPage(Paginator.Page page) {
+        currentPage = page;
+        viewModel.setPagePosition(page.start);
+        pageView.setPage(page);
+        updatePageNumber();
+    }
+
+    private void updatePageNumber() {
+        if (pageReader == null || currentPage == null) return;
+        // ≈ — карта страниц до этого места ещё не дошла
+        int exact = pageReader.exactPage(currentPage.start);
+        String number = exact >= 0
+                ? String.valueOf(exact + 1)
+                : "≈" + (pageReader.estimatedPage(currentPage.start) + 1);
+        String total = (pageReader.isPageCountExact() ? "" : "≈") + pageReader.pageCount();
+        toolbar.setSubtitle(getString(R.string.page_of, number, total));
+    }
+
+    private void showGoToPageDialog() {
+        if (pageReader == null) return;
+        final EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_NUMBER);
+        input.setHint("1–" + pageReader.pageCount());
+
+        new AlertDialog.Builder(this)
+                .setTitle("Перейти к странице")
+                .setView(input)
+                .setPositiveButton("Перейти", (dialog, which) -> {
+                    String text = input.getText().toString().trim();
+                    int page;
+                    try {
+                        page = Integer.parseInt(text);
+                    } catch (NumberFormatException e) {
+                        return;
+                    }
+                    if (page >= 1 && pageReader != null) pageReader.goToPage(page - 1, this::showPage);
+                })
+                .setNegativeButton("Отмена", null)
+                .show();
+    }
+
+    // Текущее место в режиме страниц: начало страницы; -1 — ещё не открыта
+    private long pagePosition() {
+        if (currentPage != null) return currentPage.start;
+        if (viewModel.getPagePosition() >= 0) return viewModel.getPagePosition();
+        ReadingProgress progress = viewModel.getProgress();
+        return progress != null ? PageMap.position(progress.getReaderPosition(), 0) : -1;
+    }
+
+    // То же в ленте: первый видимый блок и первая видимая строка в нём
+    private long scrollPosition() {
+        if (adapter.getBlocksCount() == 0) return -1;
+        int pos = layoutManager.findFirstVisibleItemPosition();
+        if (pos == RecyclerView.NO_POSITION) return -1;
+
+        int offset = 0;
+        RecyclerView.ViewHolder vh = recyclerView.findViewHolderForAdapterPosition(pos);
+        if (vh instanceof ReaderBlocksAdapter.BlockVH) {
+            TextView view = ((ReaderBlocksAdapter.BlockVH) vh).textBlock;
+            Layout layout = view.getLayout();
+            int y = -vh.itemView.getTop() - view.getPaddingTop();
+            if (layout != null && y > 0) offset = layout.getLineStart(layout.getLineForVertical(y));
+        }
+        return PageMap.position(pos, offset);
+    }
+
+    // Блок в ленту и, когда он разложится, строка с нужным символом — к верху экрана
+    private void scrollToPosition(long position) {
+        int block = Math.min(PageMap.blockOf(position), adapter.getBlocksCount() - 1);
+        int offset = PageMap.offsetOf(position);
+        if (block < 0) return;
+        layoutManager.scrollToPositionWithOffset(block, 0);
+        if (offset == 0) return;
+        recyclerView.post(() -> {
+            RecyclerView.ViewHolder vh = recyclerView.findViewHolderForAdapterPosition(block);
+            if (!(vh instanceof ReaderBlocksAdapter.BlockVH)) return;
+            TextView view = ((ReaderBlocksAdapter.BlockVH) vh).textBlock;
+            Layout layout = view.getLayout();
+            if (layout == null || offset > layout.getText().length()) return;
+            int y = layout.getLineTop(layout.getLineForOffset(offset)) + view.getPaddingTop();
+            layoutManager.scrollToPositionWithOffset(block, -y);
+        });
+    }
+
     private void saveReadingPosition() {
-        if (currentBook == null) return;
+        if (viewModel == null || viewModel.getProgress() == null) return;
+        if (pageMode) {
+            // позиция в ленте — в пикселях, для страницы сохраняем только её первый блок
+            if (pageReader != null && currentPage != null) {
+                viewModel.saveProgress(PageMap.blockOf(currentPage.start), 0,
+                        pageReader.percentOf(currentPage.start));
+            }
+            return;
+        }
         if (layoutManager == null) return;
         if (adapter == null || adapter.getBlocksCount() == 0) return;
 
@@ -167,14 +379,10 @@ public class ReaderActivity extends AppCompatActivity {
             offset = Math.max(0, -vh.itemView.getTop());
         }
 
-        currentBook.setReaderPosition(pos);
-        currentBook.setReaderOffset(offset);
-
         // Процент для списка (грубо + поправка на offset внутри блока)
         int percent = computePercent(pos, offset, vh);
-        currentBook.setReaderPercent(percent);
 
-        viewModel.update(currentBook);
+        viewModel.saveProgress(pos, offset, percent);
     }
 
     private int computePercent(int pos, int offset, RecyclerView.ViewHolder vh) {
@@ -195,11 +403,6 @@ public class ReaderActivity extends AppCompatActivity {
         return percent;
     }
 
-    private void updateToolbarPercent() {
-        if (currentBook == null) return;
-        toolbar.setTitle(baseTitle + " (" + currentBook.getReaderPercent() + "%)");
-    }
-
     @Override
     protected void onPause() {
         super.onPause();
@@ -208,7 +411,8 @@ public class ReaderActivity extends AppCompatActivity {
 
     @Override
     protected void onDestroy() {
+        releasePageReader();
+        adapter.release();
         super.onDestroy();
-        parserExecutor.shutdown();
     }
 }
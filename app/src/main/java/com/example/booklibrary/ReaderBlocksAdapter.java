@@ -6,23 +6,27 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class ReaderBlocksAdapter extends RecyclerView.Adapter<ReaderBlocksAdapter.BlockVH> {
 
-    private final List<String> blocks = new ArrayList<>();
+    private final BlockTextPrefetcher prefetcher = new BlockTextPrefetcher();
+    private BlockWindow window;
 
-    public void setBlocks(List<String> newBlocks) {
-        blocks.clear();
-        if (newBlocks != null) blocks.addAll(newBlocks);
+    public void setWindow(BlockWindow newWindow) {
+        window = newWindow;
+        prefetcher.setWindow(newWindow);
+        if (window != null) {
+            // страница догрузилась — перерисовываем только её блоки
+            window.setListener(this::notifyItemRangeChanged);
+        }
         notifyDataSetChanged();
     }
 
     public int getBlocksCount() {
-        return blocks.size();
+        return window != null ? window.getBlockCount() : 0;
     }
 
     @NonNull
@@ -30,17 +34,51 @@ public class ReaderBlocksAdapter extends RecyclerView.Adapter<ReaderBlocksAdapte
     public BlockVH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View v = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_reader_block, parent, false);
-        return new BlockVH(v);
+        BlockVH holder = new BlockVH(v);
+        if (!prefetcher.hasParams()) {
+            prefetcher.setParams(TextViewCompat.getTextMetricsParams(holder.textBlock));
+        }
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull BlockVH holder, int position) {
-        holder.textBlock.setText(blocks.get(position));
+        CharSequence text = window.getBlock(position);  // заодно подгружает соседние страницы
+        PrecomputedTextCompat ready = prefetcher.get(position);
+        if (ready == null || !bindPrecomputed(holder.textBlock, ready)) {
+            bindPlain(holder.textBlock, text);
+        }
+        prefetcher.prefetchAround(position);
+    }
+
+    private static void bindPlain(TextView view, CharSequence text) {
+        if (text instanceof CharBlock) {
+            // TextView оборачивает массив, не копируя его в строку
+            CharBlock block = (CharBlock) text;
+            view.setText(block.array(), block.start(), block.length());
+        } else {
+            view.setText(text != null ? text : "");
+        }
+    }
+
+    // false — параметры TextView разошлись с теми, под которые готовили текст
+    private static boolean bindPrecomputed(TextView view, PrecomputedTextCompat text) {
+        try {
+            TextViewCompat.setPrecomputedText(view, text);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Из onDestroy активити: останавливает фоновую подготовку текста
+    public void release() {
+        prefetcher.release();
     }
 
     @Override
     public int getItemCount() {
-        return blocks.size();
+        return getBlocksCount();
     }
 
     static class BlockVH extends RecyclerView.ViewHolder {
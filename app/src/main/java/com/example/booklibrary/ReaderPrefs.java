@@ -0,0 +1,20 @@
+package com.example.booklibrary;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+public class ReaderPrefs {
+    private static final String PREFS_NAME = "reading_prefs";
+    private static final String KEY_PAGE_MODE = "reader_page_mode";
+
+    // true — постранично, false — сплошная лента
+    public static boolean isPageMode(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return prefs.getBoolean(KEY_PAGE_MODE, false);
+    }
+
+    public static void setPageMode(Context context, boolean pageMode) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit().putBoolean(KEY_PAGE_MODE, pageMode).apply();
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.booklibrary;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Состояние читалки одной книги: открытый текст, окно блоков, позиция и её сохранение.
+ * Переживает поворот экрана и смену темы — новая ReaderActivity получает готовое окно
+ * и позицию сразу. Списков библиотеки не запрашивает: только строку книги и её позицию.
+ */
+public class ReaderViewModel extends AndroidViewModel {
+
+    public enum Status {
+        LOADING,         // открываем текст
+        LOADING_SOURCE,  // импорт был без текста — разбираем исходный FB2
+        READY,           // window готово
+        NO_TEXT,
+        ERROR            // исходный FB2 не прочитался; причина — в error
+    }
+
+    public static class State {
+        public final Status status;
+        public final BlockWindow window;  // только для READY
+        public final BookText text;       // то же; для постраничного режима
+        public final String error;        // только для ERROR
+
+        State(Status status, BlockWindow window, BookText text) {
+            this(status, window, text, null);
+        }
+
+        State(Status status, BlockWindow window, BookText text, String error) {
+            this.status = status;
+            this.window = window;
+            this.text = text;
+            this.error = error;
+        }
+    }
+
+    private static final String TAG = "ReaderViewModel";
+
+    private final BookRepository repository;
+    private final ExecutorService parserExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final MediatorLiveData<State> state = new MediatorLiveData<>();
+    private LiveData<Book> book;
+    private int bookId = -1;
+    private int pendingJump = -1;
+
+    // Последняя известная позиция (UI-поток); null — текст ещё не открыт
+    private ReadingProgress progress;
+    // Начало показанной страницы постраничного режима (PageMap.position); -1 — ещё нет.
+    // В ReadingProgress попадает только блок, а здесь позиция переживает поворот точно
+    private long pagePosition = -1;
+
+    // Что показано: текст (пишется в parserExecutor) и Book.textVersion, под которой его
+    // открыли (UI-поток; -1 — ещё ничего). Строка книги перевыпускается при любой записи
+    // в books — текст перечитывается, только если сменилась версия
+    private volatile BookText shownText;
+    private long shownTextVersion = -1;
+
+    public ReaderViewModel(@NonNull Application application) {
+        super(application);
+        repository = BookRepository.getInstance(application);
+    }
+
+    // Из onCreate: повторный вызов для той же книги (после поворота) ничего не делает.
+    // jumpBlock >= 0 — открыть на этом блоке вместо сохранённой позиции
+    public void open(int bookId, int jumpBlock) {
+        if (this.bookId == bookId) return;
+        this.bookId = bookId;
+        pendingJump = jumpBlock;
+        state.setValue(new State(Status.LOADING, null, null));
+        book = repository.getBookById(bookId);
+        state.addSource(book, this::onBook);
+    }
+
+    public LiveData<Book> getBook() {
+        return book;
+    }
+
+    public LiveData<State> getState() {
+        return state;
+    }
+
+    public ReadingProgress getProgress() {
+        return progress;
+    }
+
+    // Позиция считается по разметке в активити; сохранения подряд сливает репозиторий
+    public void saveProgress(int position, int offset, int percent) {
+        if (progress == null) return;
+        // Новый объект: сохраняется на фоне
+        progress = new ReadingProgress(bookId, position, offset, percent);
+        repository.saveProgress(progress);
+    }
+
+    public long getPagePosition() {
+        return pagePosition;
+    }
+
+    public void setPagePosition(long position) {
+        pagePosition = position;
+    }
+
+    // Карта страниц показанного текста для разметки layoutKey (Paginator.Spec.key)
+    public File getPageMapFile(String layoutKey) {
+        return repository.pageMapFile(bookId, shownTextVersion, layoutKey);
+    }
+
+    private void onBook(Book book) {
+        if (book == null) return;  // книгу удалили — активити закроется сама
+        long version = book.getTextVersion();
+        if (version == shownTextVersion) return;  // изменились другие поля книги
+
+        int jump = pendingJump;
+        pendingJump = -1;
+
+        // Текст лежит в файле вне базы: на фоне отображаем его в память
+        // и декодируем только страницу блоков вокруг сохранённой позиции
+        parserExecutor.execute(() -> {
+            BookText text;
+            try {
+                text = repository.openText(book.getId(), version);
+                if (text == null && book.getSourceUri() != null) {
+                    state.postValue(new State(Status.LOADING_SOURCE, null, null));
+                    text = repository.loadTextFromSource(book);
+                }
+            } catch (IOException e) {
+                // файл переместили, доступ к папке отозван, FB2 повреждён — говорим читателю почему
+                Log.w(TAG, "Не удалось загрузить текст книги " + book.getId(), e);
+                String error = e.getMessage() != null ? e.getMessage() : e.toString();
+                shownText = null;
+                mainHandler.post(() -> {
+                    shownTextVersion = version;
+                    showWindow(null, null, Status.ERROR, error);
+                });
+                return;
+            }
+
+            if (text != null && text == shownText) {
+                // новая версия, но тот же текст (например, его только что подгрузили отсюда же)
+                mainHandler.post(() -> shownTextVersion = version);
+                return;
+            }
+
+            ReadingProgress saved = repository.loadProgress(book.getId());
+            if (saved == null) saved = new ReadingProgress(book.getId(), 0, 0, 0);
+            if (jump >= 0) {
+                // переход из поиска идёт через тот же путь восстановления позиции
+                saved.setReaderPosition(jump);
+                saved.setReaderOffset(0);
+            }
+            ReadingProgress loaded = saved;
+
+            // здесь же, а не в UI-потоке: следующая задача executor'а уже сравнит с ним
+            shownText = text;
+            if (text == null || text.getBlockCount() == 0) {
+                mainHandler.post(() -> {
+                    shownTextVersion = version;
+                    showWindow(null, null, Status.NO_TEXT);
+                });
+                return;
+            }
+
+            BookText opened = text;
+            BlockWindow window = new BlockWindow(text.getBlockCount(), text::getBlocks, parserExecutor);
+            int page = BlockWindow.pageOf(Math.min(loaded.getReaderPosition(), text.getBlockCount() - 1));
+            List<CharSequence> firstPage = window.loadPage(page);
+
+            mainHandler.post(() -> {
+                progress = loaded;
+                shownTextVersion = version;
+                pagePosition = -1;
+                window.putPage(page, firstPage);
+                showWindow(window, opened, Status.READY);
+            });
+        });
+    }
+
+    private void showWindow(BlockWindow window, BookText text, Status status) {
+        showWindow(window, text, status, null);
+    }
+
+    private void showWindow(BlockWindow window, BookText text, Status status, String error) {
+        State old = state.getValue();
+        if (old != null && old.window != null) old.window.release();
+        state.setValue(new State(status, window, text, error));
+    }
+
+    @Override
+    protected void onCleared() {
+        State last = state.getValue();
+        if (last != null && last.window != null) last.window.release();
+        parserExecutor.shutdown();
+    }
+}
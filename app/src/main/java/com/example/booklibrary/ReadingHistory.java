@@ -0,0 +1,71 @@
+package com.example.booklibrary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Сколько книг прочитано по годам и месяцам за всю историю.
+ * Строится из строк library_stats вида read_month:2025-03.
+ */
+public class ReadingHistory {
+
+    public static class YearReads {
+        private final int year;
+        private final int[] months = new int[12]; // январь — [0]
+        private int total;
+
+        YearReads(int year) {
+            this.year = year;
+        }
+
+        public int getYear() { return year; }
+        public int getTotal() { return total; }
+
+        // month: 1..12
+        public int getMonth(int month) { return months[month - 1]; }
+    }
+
+    private final List<YearReads> years; // от последнего года к первому
+
+    public ReadingHistory(List<LibraryStat> monthRows) {
+        Map<Integer, YearReads> byYear = new TreeMap<>(Collections.reverseOrder());
+        if (monthRows != null) {
+            for (LibraryStat row : monthRows) {
+                String key = row.getStatKey();
+                int count = (int) Math.round(row.getValue());
+                if (count <= 0 || !key.startsWith(LibraryStat.PREFIX_READ_MONTH)) continue;
+
+                // read_month:YYYY-MM
+                String ym = key.substring(LibraryStat.PREFIX_READ_MONTH.length());
+                int year, month;
+                try {
+                    year = Integer.parseInt(ym.substring(0, 4));
+                    month = Integer.parseInt(ym.substring(5, 7));
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                if (month < 1 || month > 12) continue;
+
+                YearReads yr = byYear.get(year);
+                if (yr == null) {
+                    yr = new YearReads(year);
+                    byYear.put(year, yr);
+                }
+                yr.months[month - 1] += count;
+                yr.total += count;
+            }
+        }
+        years = new ArrayList<>(byYear.values());
+    }
+
+    public List<YearReads> getYears() {
+        return years;
+    }
+
+    public boolean isEmpty() {
+        return years.isEmpty();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.booklibrary;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * Позиция в читалке — отдельно от books: частое сохранение позиции пишет
+ * одну короткую строку и не инвалидирует списки книг и статистику.
+ */
+@Entity(tableName = "reading_progress",
+        foreignKeys = @ForeignKey(entity = Book.class,
+                parentColumns = "id",
+                childColumns = "bookId",
+                onDelete = ForeignKey.CASCADE))
+public class ReadingProgress {
+
+    @PrimaryKey
+    private int bookId;
+
+    private int readerPosition;   // индекс первого видимого блока
+    private int readerOffset;     // смещение в px внутри блока (сколько прокрутили вниз)
+    private int readerPercent;    // 0..100 (для прогресса в списке)
+
+    public ReadingProgress(int bookId, int readerPosition, int readerOffset, int readerPercent) {
+        this.bookId = bookId;
+        setReaderPosition(readerPosition);
+        setReaderOffset(readerOffset);
+        setReaderPercent(readerPercent);
+    }
+
+    public int getBookId() { return bookId; }
+    public void setBookId(int bookId) { this.bookId = bookId; }
+
+    public int getReaderPosition() { return readerPosition; }
+    public void setReaderPosition(int readerPosition) {
+        this.readerPosition = Math.max(0, readerPosition);
+    }
+
+    public int getReaderOffset() { return readerOffset; }
+    public void setReaderOffset(int readerOffset) {
+        this.readerOffset = Math.max(0, readerOffset);
+    }
+
+    public int getReaderPercent() { return readerPercent; }
+    public void setReaderPercent(int readerPercent) {
+        if (readerPercent < 0) readerPercent = 0;
+        if (readerPercent > 100) readerPercent = 100;
+        this.readerPercent = readerPercent;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.booklibrary;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+@Dao
+public interface ReadingProgressDao {
+
+    // INSERT, при конфликте — UPDATE (без REPLACE, который удалил бы строку)
+    @Upsert
+    void upsert(ReadingProgress progress);
+
+    // Синхронно — вызывать не из UI-потока
+    @Query("SELECT * FROM reading_progress WHERE bookId = :bookId")
+    ReadingProgress getProgress(int bookId);
+
+    @Query("SELECT * FROM reading_progress WHERE bookId = :bookId")
+    LiveData<ReadingProgress> observeProgress(int bookId);
+}
@@ -7,13 +7,25 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
-public class RecentBooksAdapter extends RecyclerView.Adapter<RecentBooksAdapter.BookViewHolder> {
-    private List<Book> books = new ArrayList<>();
+// Последние прочитанные: список сравнивается DiffUtil в фоне (ListAdapter), карточки
+// перерисовываются только у изменившихся книг
+public class RecentBooksAdapter extends ListAdapter<BookSummary, RecentBooksAdapter.BookViewHolder> {
+
+    public RecentBooksAdapter() {
+        super(new BookSummaryDiff());
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
 
     @NonNull
     @Override
@@ -25,18 +37,17 @@ public class RecentBooksAdapter extends RecyclerView.Adapter<RecentBooksAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull BookViewHolder holder, int position) {
-        Book book = books.get(position);
-        holder.bind(book);
+        holder.bind(getItem(position));
     }
 
+    // Прогресс на этой карточке не показывается; статус — только рейтингом
     @Override
-    public int getItemCount() {
-        return books.size();
-    }
-
-    public void setBooks(List<Book> books) {
-        this.books = books;
-        notifyDataSetChanged();
+    public void onBindViewHolder(@NonNull BookViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            holder.bind(getItem(position));
+        } else if (payloads.contains(BookSummaryDiff.PAYLOAD_STATUS)) {
+            holder.bindRating(getItem(position));
+        }
     }
 
     static class BookViewHolder extends RecyclerView.ViewHolder {
@@ -52,14 +63,17 @@ public class RecentBooksAdapter extends RecyclerView.Adapter<RecentBooksAdapter.
             ratingBar = itemView.findViewById(R.id.ratingBar);
         }
 
-        public void bind(Book book) {
+        public void bind(BookSummary book) {
             textBookTitle.setText(book.getTitle());
             textBookAuthor.setText(book.getAuthor());
             textBookYear.setText(String.valueOf(book.getYear()));
+            bindRating(book);
+        }
 
+        void bindRating(BookSummary book) {
             if (book.getRating() > 0) {
                 ratingBar.setRating(book.getRating());
-                textRatingValue.setText(String.format("%.1f", book.getRating()));
+                textRatingValue.setText(String.format(Locale.getDefault(), "%.1f", book.getRating()));
                 ratingBar.setVisibility(View.VISIBLE);
                 textRatingValue.setVisibility(View.VISIBLE);
             } else {
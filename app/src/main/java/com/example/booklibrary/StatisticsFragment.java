@@ -20,7 +20,7 @@ public class StatisticsFragment extends Fragment {
 
     private TextView textReadThisYear, textYearProgress, textTotalReadCount,
             textReadingNowCount, textPlannedCount, textAverageRating,
-            textTotalBooks, textNoRecentBooks;
+            textTotalBooks, textNoRecentBooks, textReadHistory;
     private ProgressBar progressBarYear;
     private RecyclerView recyclerViewRecentBooks;
     private RecentBooksAdapter recentBooksAdapter;
@@ -47,6 +47,7 @@ public class StatisticsFragment extends Fragment {
         textTotalBooks = view.findViewById(R.id.textTotalBooks);
         progressBarYear = view.findViewById(R.id.progressBarYear);
         textNoRecentBooks = view.findViewById(R.id.textNoRecentBooks);
+        textReadHistory = view.findViewById(R.id.textReadHistory);
         recyclerViewRecentBooks = view.findViewById(R.id.recyclerViewRecentBooks);
         cardYearProgress = view.findViewById(R.id.cardYearProgress); // id зададим чуть ниже
         int goal = GoalPrefs.getYearGoal(requireContext());
@@ -73,32 +74,27 @@ public class StatisticsFragment extends Fragment {
 
         yearGoal = GoalPrefs.getYearGoal(requireContext());
 
-        viewModel.getReadBooksCountForYear(String.valueOf(java.time.Year.now().getValue()))
-                .observe(getViewLifecycleOwner(), count -> {
-                    textReadThisYear.setText(String.valueOf(count));
-                    progressBarYear.setMax(yearGoal);
-                    progressBarYear.setProgress(count);
-                    textYearProgress.setText(count + " / " + yearGoal + " книг");
-                });
-
-        viewModel.getTotalReadBooks().observe(getViewLifecycleOwner(), count ->
-                textTotalReadCount.setText(String.valueOf(count)));
-
-        viewModel.getTotalReadingBooks().observe(getViewLifecycleOwner(), count ->
-                textReadingNowCount.setText(String.valueOf(count)));
-
-        viewModel.getTotalPlannedBooks().observe(getViewLifecycleOwner(), count ->
-                textPlannedCount.setText(String.valueOf(count)));
-
-        viewModel.getAverageRating().observe(getViewLifecycleOwner(), rating ->
-                textAverageRating.setText(String.format("%.1f", rating)));
+        int year = java.time.Year.now().getValue();
+        viewModel.getLibraryStats().observe(getViewLifecycleOwner(), stats -> {
+            int count = stats.getReadCountForYear(year);
+            textReadThisYear.setText(String.valueOf(count));
+            progressBarYear.setMax(yearGoal);
+            progressBarYear.setProgress(count);
+            textYearProgress.setText(count + " / " + yearGoal + " книг");
+
+            textTotalReadCount.setText(String.valueOf(stats.getCountByStatus(Book.STATUS_READ)));
+            textReadingNowCount.setText(String.valueOf(stats.getCountByStatus(Book.STATUS_READING)));
+            textPlannedCount.setText(String.valueOf(stats.getCountByStatus(Book.STATUS_PLANNED)));
+            textAverageRating.setText(String.format("%.1f", stats.getAverageRating()));
+            textTotalBooks.setText(String.valueOf(stats.getTotalBooks()));
+        });
 
-        viewModel.getTotalBooks().observe(getViewLifecycleOwner(), total ->
-                textTotalBooks.setText(String.valueOf(total)));
+        viewModel.getReadingHistory().observe(getViewLifecycleOwner(), history ->
+                textReadHistory.setText(formatHistory(history)));
 
         viewModel.getRecentReadBooks(5).observe(getViewLifecycleOwner(), books -> {
             if (books != null && !books.isEmpty()) {
-                recentBooksAdapter.setBooks(books);
+                recentBooksAdapter.submitList(books);
                 textNoRecentBooks.setVisibility(View.GONE);
                 recyclerViewRecentBooks.setVisibility(View.VISIBLE);
             } else {
@@ -108,6 +104,32 @@ public class StatisticsFragment extends Fragment {
         });
     }
 
+    private static final String[] MONTHS = {
+            "янв", "фев", "мар", "апр", "май", "июн", "июл", "авг", "сен", "окт", "ноя", "дек"
+    };
+
+    // 2025 — 12 книг
+    //   янв 2 · мар 4 · ...
+    private static String formatHistory(ReadingHistory history) {
+        if (history.isEmpty()) return "Нет прочитанных книг";
+
+        StringBuilder sb = new StringBuilder();
+        for (ReadingHistory.YearReads yr : history.getYears()) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(yr.getYear()).append(" — ").append(yr.getTotal()).append(" книг\n  ");
+
+            boolean first = true;
+            for (int m = 1; m <= 12; m++) {
+                int count = yr.getMonth(m);
+                if (count == 0) continue;
+                if (!first) sb.append(" · ");
+                sb.append(MONTHS[m - 1]).append(' ').append(count);
+                first = false;
+            }
+        }
+        return sb.toString();
+    }
+
     private void showGoalDialog() {
         LayoutInflater inflater = LayoutInflater.from(requireContext());
         View dialogView = inflater.inflate(R.layout.dialog_year_goal, null);
@@ -0,0 +1,98 @@
+package com.example.booklibrary;
+
+import android.os.Bundle;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.appcompat.widget.SearchView;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.LoadState;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.appbar.MaterialToolbar;
+
+import kotlin.Unit;
+
+/**
+ * Поиск по тексту всех импортированных книг. Тап по результату открывает
+ * читалку на найденном блоке.
+ */
+public class TextSearchActivity extends BaseActivity implements TextSearchAdapter.OnHitClickListener {
+
+    private static final int MAX_QUERY_LEN = 50;
+    // Короткие префиксы совпадают почти со всем текстом — ищем по мере ввода только от 3 букв
+    private static final int MIN_LIVE_QUERY_LEN = 3;
+
+    private TextSearchViewModel viewModel;
+    private TextSearchAdapter adapter;
+    private TextView textEmpty;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_text_search);
+
+        MaterialToolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+        toolbar.setNavigationOnClickListener(v -> finish());
+
+        textEmpty = findViewById(R.id.textNoHits);
+
+        RecyclerView recyclerView = findViewById(R.id.recyclerViewHits);
+        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new TextSearchAdapter(this);
+        recyclerView.setAdapter(adapter);
+
+        adapter.addLoadStateListener(states -> {
+            boolean loaded = states.getRefresh() instanceof LoadState.NotLoading;
+            String query = viewModel.getQuery();
+            boolean searched = query != null && !query.isEmpty();
+            textEmpty.setVisibility(loaded && searched && adapter.getItemCount() == 0
+                    ? View.VISIBLE : View.GONE);
+            return Unit.INSTANCE;
+        });
+
+        viewModel = new ViewModelProvider(this).get(TextSearchViewModel.class);
+        viewModel.getResults().observe(this, data -> adapter.submitData(getLifecycle(), data));
+
+        setupSearch();
+    }
+
+    private void setupSearch() {
+        SearchView searchView = findViewById(R.id.searchViewText);
+        searchView.setIconified(false);
+
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                viewModel.search(normalize(query));
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                String q = normalize(newText);
+                if (q.isEmpty() || q.length() >= MIN_LIVE_QUERY_LEN) {
+                    viewModel.search(q);
+                }
+                return true;
+            }
+        });
+    }
+
+    private static String normalize(String query) {
+        String q = (query == null) ? "" : query.trim();
+        if (q.length() > MAX_QUERY_LEN) q = q.substring(0, MAX_QUERY_LEN);
+        return q;
+    }
+
+    @Override
+    public void onHitClick(BlockHit hit) {
+        ReaderActivity.start(this, hit.getBookId(), hit.getBlockIndex());
+    }
+}
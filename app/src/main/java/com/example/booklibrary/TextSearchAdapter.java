@@ -0,0 +1,105 @@
+package com.example.booklibrary;
+
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Objects;
+
+public class TextSearchAdapter extends PagingDataAdapter<BlockHit, TextSearchAdapter.HitViewHolder> {
+
+    public interface OnHitClickListener {
+        void onHitClick(BlockHit hit);
+    }
+
+    private static final DiffUtil.ItemCallback<BlockHit> DIFF = new DiffUtil.ItemCallback<BlockHit>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull BlockHit a, @NonNull BlockHit b) {
+            return a.getBookId() == b.getBookId() && a.getBlockIndex() == b.getBlockIndex();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull BlockHit a, @NonNull BlockHit b) {
+            return Objects.equals(a.getTitle(), b.getTitle())
+                    && Objects.equals(a.getSnippet(), b.getSnippet());
+        }
+    };
+
+    private final OnHitClickListener listener;
+
+    public TextSearchAdapter(OnHitClickListener listener) {
+        super(DIFF);
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public HitViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_text_hit, parent, false);
+        return new HitViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull HitViewHolder holder, int position) {
+        BlockHit hit = getItem(position);
+        if (hit != null) holder.bind(hit);
+    }
+
+    class HitViewHolder extends RecyclerView.ViewHolder {
+        private final TextView textTitle, textSnippet;
+        private BlockHit hit;
+
+        HitViewHolder(@NonNull View itemView) {
+            super(itemView);
+            textTitle = itemView.findViewById(R.id.textHitTitle);
+            textSnippet = itemView.findViewById(R.id.textHitSnippet);
+
+            itemView.setOnClickListener(v -> {
+                if (hit != null && listener != null) listener.onHitClick(hit);
+            });
+        }
+
+        void bind(BlockHit hit) {
+            this.hit = hit;
+            textTitle.setText(hit.getTitle());
+            textSnippet.setText(highlight(hit.getSnippet(),
+                    ContextCompat.getColor(itemView.getContext(), R.color.ocean_dark)));
+        }
+    }
+
+    // Заменяет маркеры snippet() на выделение жирным
+    private static CharSequence highlight(String snippet, int color) {
+        if (snippet == null) return "";
+
+        SpannableStringBuilder sb = new SpannableStringBuilder();
+        int i = 0;
+        while (i < snippet.length()) {
+            int start = snippet.indexOf(BlockHit.MARK_START, i);
+            if (start < 0) break;
+            int end = snippet.indexOf(BlockHit.MARK_END, start);
+            if (end < 0) break;
+
+            sb.append(snippet, i, start);
+            int spanStart = sb.length();
+            sb.append(snippet, start + 1, end);
+            sb.setSpan(new StyleSpan(Typeface.BOLD), spanStart, sb.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            sb.setSpan(new ForegroundColorSpan(color), spanStart, sb.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            i = end + 1;
+        }
+        sb.append(snippet, i, snippet.length());
+        return sb;
+    }
+}
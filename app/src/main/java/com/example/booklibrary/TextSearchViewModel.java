@@ -0,0 +1,42 @@
+package com.example.booklibrary;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.PagingData;
+
+public class TextSearchViewModel extends AndroidViewModel {
+
+    private final BookRepository repository;
+    private final MutableLiveData<String> query = new MutableLiveData<>();
+    private final LiveData<PagingData<BlockHit>> results;
+
+    public TextSearchViewModel(@NonNull Application application) {
+        super(application);
+        repository = BookRepository.getInstance(application);
+
+        // новый запрос — новый постраничный источник
+        results = Transformations.switchMap(query, q -> {
+            LiveData<PagingData<BlockHit>> source =
+                    repository.searchText(q, ViewModelKt.getViewModelScope(this));
+            return source != null ? source : new MutableLiveData<>(PagingData.empty());
+        });
+    }
+
+    public void search(String q) {
+        if (!q.equals(query.getValue())) query.setValue(q);
+    }
+
+    public String getQuery() {
+        return query.getValue();
+    }
+
+    public LiveData<PagingData<BlockHit>> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.booklibrary;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Отложенная запись: изменения копятся по ключу (последнее побеждает) и
+ * пишутся пачкой в одной транзакции — один fsync вместо одного на каждый вызов.
+ * Сброс — через FLUSH_DELAY_MS после первой записи, сразу при MAX_BATCH
+ * ожидающих или по flush(). Все записи идут в потоке executor.
+ *
+ * Если транзакция пачки падает, записи повторяются по одной, каждая в своей транзакции:
+ * удачные остаются в базе, упавшие возвращаются в очередь, а после MAX_ATTEMPTS
+ * неудач подряд выбрасываются с ошибкой в лог.
+ */
+public class WriteBehindQueue {
+
+    private static final String TAG = "WriteBehindQueue";
+
+    public static final long FLUSH_DELAY_MS = 300;
+    public static final int MAX_BATCH = 64;
+    public static final int MAX_ATTEMPTS = 3;
+
+    private final ScheduledExecutorService executor;
+    private final Consumer<Runnable> transaction;
+
+    private final Object lock = new Object();
+    private LinkedHashMap<String, Runnable> pending = new LinkedHashMap<>();
+    private long firstPendingAt;              // uptime первой ожидающей записи
+    private ScheduledFuture<?> scheduledFlush;
+    private final Map<String, Integer> attempts = new HashMap<>();  // неудач подряд по ключу
+
+    // Метрики — под lock
+    private long flushCount;
+    private long writeCount;
+    private long coalescedCount;
+    private int lastBatchSize;
+    private int maxBatchSize;
+    private long lastLatencyMs;
+    private long maxLatencyMs;
+    private long failedCount;                 // неудачных попыток записи
+    private long droppedCount;                // выброшено после MAX_ATTEMPTS
+
+    // transaction выполняет переданный блок в транзакции базы (RoomDatabase::runInTransaction)
+    public WriteBehindQueue(ScheduledExecutorService executor, Consumer<Runnable> transaction) {
+        this.executor = executor;
+        this.transaction = transaction;
+    }
+
+    // Поставить запись; ожидающая запись с тем же ключом заменяется
+    public void put(String key, Runnable write) {
+        synchronized (lock) {
+            if (pending.isEmpty()) firstPendingAt = SystemClock.uptimeMillis();
+            if (pending.remove(key) != null) coalescedCount++;
+            pending.put(key, write);
+
+            if (pending.size() >= MAX_BATCH) {
+                scheduleLocked(0);
+            } else if (scheduledFlush == null) {
+                scheduleLocked(FLUSH_DELAY_MS);
+            }
+        }
+    }
+
+    // Выбросить ожидающую запись (например, книгу удалили раньше, чем её изменения записаны)
+    public void remove(String key) {
+        synchronized (lock) {
+            pending.remove(key);
+        }
+    }
+
+    // Сбросить ожидающие записи в фоне, не дожидаясь таймера
+    public void flush() {
+        synchronized (lock) {
+            if (!pending.isEmpty()) scheduleLocked(0);
+        }
+    }
+
+    // Сбросить и дождаться записи; IllegalStateException — часть записей не удалась
+    // (они снова в очереди или выброшены). Не вызывать из UI-потока и из потока executor
+    public void flushAndWait() {
+        try {
+            executor.submit(this::drain).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось записать изменения", e.getCause());
+        }
+    }
+
+    private void scheduleLocked(long delayMs) {
+        if (scheduledFlush != null) {
+            if (delayMs > 0) return;
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = executor.schedule(this::drain, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Выполняется в потоке executor
+    private void drain() {
+        Map<String, Runnable> batch;
+        long since;
+        synchronized (lock) {
+            scheduledFlush = null;
+            if (pending.isEmpty()) return;
+            batch = pending;
+            since = firstPendingAt;
+            pending = new LinkedHashMap<>();
+        }
+
+        Map<String, Runnable> failed = new LinkedHashMap<>();
+        RuntimeException error = null;
+        try {
+            transaction.accept(() -> {
+                for (Runnable write : batch.values()) {
+                    write.run();
+                }
+            });
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Пачка из " + batch.size() + " записей не записалась, повторяем по одной", e);
+            error = e;
+            for (Map.Entry<String, Runnable> entry : batch.entrySet()) {
+                try {
+                    transaction.accept(entry.getValue());
+                } catch (RuntimeException single) {
+                    Log.e(TAG, "Не удалось записать " + entry.getKey(), single);
+                    failed.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        long latency = SystemClock.uptimeMillis() - since;
+        synchronized (lock) {
+            flushCount++;
+            writeCount += batch.size() - failed.size();
+            lastBatchSize = batch.size();
+            maxBatchSize = Math.max(maxBatchSize, batch.size());
+            lastLatencyMs = latency;
+            maxLatencyMs = Math.max(maxLatencyMs, latency);
+            for (String key : batch.keySet()) {
+                if (!failed.containsKey(key)) attempts.remove(key);
+            }
+            if (!failed.isEmpty()) requeueLocked(failed, since);
+        }
+        if (!failed.isEmpty()) throw error;
+    }
+
+    // Упавшие записи — в начало очереди; более новая запись того же ключа их заменяет
+    private void requeueLocked(Map<String, Runnable> failed, long since) {
+        failedCount += failed.size();
+        LinkedHashMap<String, Runnable> merged = new LinkedHashMap<>();
+        for (Map.Entry<String, Runnable> entry : failed.entrySet()) {
+            String key = entry.getKey();
+            int count = attempts.merge(key, 1, Integer::sum);
+            if (count >= MAX_ATTEMPTS) {
+                attempts.remove(key);
+                droppedCount++;
+                Log.e(TAG, "Запись " + key + " выброшена после " + count + " попыток");
+            } else if (!pending.containsKey(key)) {
+                merged.put(key, entry.getValue());
+            }
+        }
+        if (merged.isEmpty()) return;
+
+        firstPendingAt = pending.isEmpty() ? since : Math.min(since, firstPendingAt);
+        merged.putAll(pending);
+        pending = merged;
+        if (scheduledFlush == null) scheduleLocked(FLUSH_DELAY_MS);
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(flushCount, writeCount, coalescedCount, lastBatchSize, maxBatchSize,
+                    lastLatencyMs, maxLatencyMs, pending.size(), failedCount, droppedCount);
+        }
+    }
+
+    /**
+     * Снимок метрик. Задержка — от первой ожидающей записи до конца транзакции.
+     */
+    public static class Stats {
+        public final long flushCount;
+        public final long writeCount;        // записано строк (после слияния)
+        public final long coalescedCount;    // сколько записей заменены более новыми
+        public final int lastBatchSize;
+        public final int maxBatchSize;
+        public final long lastLatencyMs;
+        public final long maxLatencyMs;
+        public final int pendingCount;
+        public final long failedCount;       // неудачных попыток записи
+        public final long droppedCount;      // записей, выброшенных после MAX_ATTEMPTS
+
+        Stats(long flushCount, long writeCount, long coalescedCount, int lastBatchSize, int maxBatchSize,
+              long lastLatencyMs, long maxLatencyMs, int pendingCount, long failedCount, long droppedCount) {
+            this.flushCount = flushCount;
+            this.writeCount = writeCount;
+            this.coalescedCount = coalescedCount;
+            this.lastBatchSize = lastBatchSize;
+            this.maxBatchSize = maxBatchSize;
+            this.lastLatencyMs = lastLatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+            this.pendingCount = pendingCount;
+            this.failedCount = failedCount;
+            this.droppedCount = droppedCount;
+        }
+
+        public double getAverageBatchSize() {
+            return flushCount == 0 ? 0 : (double) writeCount / flushCount;
+        }
+
+        @Override
+        public String toString() {
+            return "flushes=" + flushCount + ", writes=" + writeCount + ", coalesced=" + coalescedCount
+                    + ", batch avg=" + String.format(java.util.Locale.ROOT, "%.1f", getAverageBatchSize())
+                    + " last=" + lastBatchSize + " max=" + maxBatchSize
+                    + ", latency last=" + lastLatencyMs + "ms max=" + maxLatencyMs + "ms"
+                    + ", pending=" + pendingCount + ", failed=" + failedCount + ", dropped=" + droppedCount;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.booklibrary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Результаты замеров (категория SlowTest) — в build/benchmarks/<name>.txt модуля,
+ * а не в вывод тестов.
+ */
+final class BenchmarkReport {
+
+    // Тесты запускаются из каталога модуля app
+    private static final File DIR = new File("build/benchmarks");
+
+    private BenchmarkReport() { }
+
+    static void write(String name, String... lines) throws IOException {
+        if (!DIR.isDirectory() && !DIR.mkdirs()) {
+            throw new IOException("Не удаётся создать каталог " + DIR);
+        }
+        Files.write(new File(DIR, name + ".txt").toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.booklibrary;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Замер: цена распаковки блока против объёма сэкономленного ввода-вывода.
+ * Только по -PslowTests (SlowTest); результаты — в build/benchmarks/BlockCodec.txt.
+ * Корректность кодека проверяет BlockCodecTest.
+ */
+@Category(SlowTest.class)
+public class BlockCodecBenchmarkTest {
+
+    private static final int CHUNKS = 200;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void measureDecodeCostAndSavedIo() throws IOException {
+        List<List<String>> chunks = new ArrayList<>(CHUNKS);
+        Random random = new Random(42);
+        for (int i = 0; i < CHUNKS; i++) {
+            List<String> blocks = new ArrayList<>(BlockCodec.BLOCKS_PER_CHUNK);
+            for (int b = 0; b < BlockCodec.BLOCKS_PER_CHUNK; b++) {
+                blocks.add(TestTexts.paragraph(random));
+            }
+            chunks.add(blocks);
+        }
+
+        long rawBytes = 0;
+        long packedBytes = 0;
+        List<byte[]> packed = new ArrayList<>(CHUNKS);
+        for (List<String> blocks : chunks) {
+            for (String block : blocks) rawBytes += block.getBytes(StandardCharsets.UTF_8).length;
+            byte[] data = BlockCodec.encode(blocks);
+            packedBytes += data.length;
+            packed.add(data);
+        }
+
+        // прогрев JIT
+        for (byte[] data : packed) BlockCodec.decode(data);
+
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (byte[] data : packed) BlockCodec.decode(data);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        int totalBlocks = CHUNKS * BlockCodec.BLOCKS_PER_CHUNK;
+        BenchmarkReport.write("BlockCodec",
+                String.format(Locale.ROOT, "blocks=%d raw=%d B packed=%d B ratio=%.2fx",
+                        totalBlocks, rawBytes, packedBytes, rawBytes / (double) packedBytes),
+                String.format(Locale.ROOT, "decode: %.0f ns/block, %.1f us/chunk; I/O saved: %d B/chunk",
+                        best / (double) totalBlocks, best / 1000.0 / CHUNKS,
+                        (rawBytes - packedBytes) / CHUNKS));
+    }
+}
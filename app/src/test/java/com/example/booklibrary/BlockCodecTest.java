@@ -0,0 +1,42 @@
+package com.example.booklibrary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Упаковка блоков: decode(encode(blocks)) возвращает те же блоки.
+ */
+public class BlockCodecTest {
+
+    @Test
+    public void roundTripsFullChunks() {
+        Random random = new Random(42);
+        for (int chunk = 0; chunk < 20; chunk++) {
+            List<String> blocks = new ArrayList<>(BlockCodec.BLOCKS_PER_CHUNK);
+            for (int b = 0; b < BlockCodec.BLOCKS_PER_CHUNK; b++) {
+                blocks.add(TestTexts.paragraph(random));
+            }
+            assertEquals(blocks, BlockCodec.decode(BlockCodec.encode(blocks)));
+        }
+    }
+
+    @Test
+    public void roundTripsEdgeCases() {
+        List<List<String>> cases = Arrays.asList(
+                Collections.<String>emptyList(),
+                Collections.singletonList(""),
+                Collections.singletonList("один"),
+                Arrays.asList("", "два", ""),
+                Arrays.asList("строка\nс переводом", "эмодзи 📖 и ё"));
+        for (List<String> blocks : cases) {
+            assertEquals(blocks, BlockCodec.decode(BlockCodec.encode(blocks)));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.booklibrary;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Замер: однопроходный BlockSplitter.segment против прежнего разбора через регулярное
+ * выражение на тексте в несколько мегабайт — время и выделенная память.
+ * Только по -PslowTests (SlowTest); результаты — в build/benchmarks/BlockSplitter.txt.
+ * Совпадение разбиения проверяет BlockSplitterTest.
+ */
+@Category(SlowTest.class)
+public class BlockSplitterBenchmarkTest {
+
+    private static final int PARAGRAPHS = 20_000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void measureSegmentAgainstRegexSplit() throws IOException {
+        String text = TestTexts.book(new Random(42), PARAGRAPHS);
+
+        // прогрев JIT
+        for (int i = 0; i < 3; i++) {
+            BlockSplitterTest.legacySplit(text);
+            BlockSplitter.segment(text);
+        }
+
+        long legacyTime = Long.MAX_VALUE;
+        long segmentTime = Long.MAX_VALUE;
+        long legacyBytes = Long.MAX_VALUE;
+        long segmentBytes = Long.MAX_VALUE;
+        int blocks = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            blocks = BlockSplitterTest.legacySplit(text).size();
+            legacyTime = Math.min(legacyTime, System.nanoTime() - start);
+            legacyBytes = Math.min(legacyBytes, allocatedBytes() - allocated);
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            BlockSplitter.segment(text);
+            segmentTime = Math.min(segmentTime, System.nanoTime() - start);
+            segmentBytes = Math.min(segmentBytes, allocatedBytes() - allocated);
+        }
+
+        BenchmarkReport.write("BlockSplitter",
+                String.format(Locale.ROOT, "text=%d chars, blocks=%d", text.length(), blocks),
+                String.format(Locale.ROOT, "regex split: %.1f ms, %d KB", legacyTime / 1e6, legacyBytes / 1024),
+                String.format(Locale.ROOT, "segment:     %.1f ms, %d KB", segmentTime / 1e6, segmentBytes / 1024));
+    }
+
+    // -1 — JVM не считает выделения по потокам
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.booklibrary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Однопроходный BlockSplitter.segment делит текст на блоки так же, как прежний
+ * разбор через replace / trim / split("\\n{2,}").
+ */
+public class BlockSplitterTest {
+
+    @Test
+    public void matchesRegexSplitOnGeneratedBook() {
+        String text = TestTexts.book(new Random(42), 2_000);
+        List<String> expected = legacySplit(text);
+
+        assertEquals(expected, BlockSplitter.split(text));
+        assertEquals(expected.size(), BlockSplitter.segment(text).size());
+    }
+
+    @Test
+    public void matchesRegexSplitOnEdgeCases() {
+        String[] cases = {
+                "", " ", "\n\n\n", "один", "  один  ", "один\nдва", "один\n\nдва",
+                "один\r\n\r\nдва", "один\r\rдва", "один\r\n \r\nдва", "\n\n один \n\n\n\n два \n\n",
+                "один\n \nдва", "\tодин\t\n\t\nдва\t", "один\n\r\nдва", "один\r\n\nдва"
+        };
+        for (String text : cases) {
+            assertEquals("\"" + text + "\"", legacySplit(text), BlockSplitter.split(text));
+        }
+    }
+
+    // Разбор до однопроходного BlockSplitter — для сравнения (и в BlockSplitterBenchmarkTest)
+    static List<String> legacySplit(String text) {
+        String normalized = text.replace("\r\n", "\n").replace("\r", "\n").trim();
+        String[] parts = normalized.split("\\n{2,}");
+
+        List<String> blocks = new ArrayList<>(parts.length);
+        for (String p : parts) {
+            String block = p.trim();
+            if (!block.isEmpty()) blocks.add(block);
+        }
+        return blocks;
+    }
+}
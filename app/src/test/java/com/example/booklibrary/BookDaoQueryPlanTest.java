@@ -0,0 +1,105 @@
+package com.example.booklibrary;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Прогоняет EXPLAIN QUERY PLAN для каждого запроса BookDao.QUERY_* и падает на любом
+ * шаге SCAN, кроме разрешённых ниже. Запросы берутся из констант, на которые
+ * ссылаются @Query, так что тест проверяет ровно тот SQL, что выполняет Room.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+@SQLiteMode(SQLiteMode.Mode.NATIVE) // нужен collation UNICODE из сборки SQLite для Android
+public class BookDaoQueryPlanTest {
+
+    // Обход всей таблицы по индексу сортировки: так листаются полные списки (Paging
+    // читает страницу за страницей), отдельной сортировки во временном B-дереве нет
+    private static final Set<String> ALLOWED_SCANS = new HashSet<>(Arrays.asList(
+            "SCAN books USING INDEX index_books_title",
+            "SCAN books USING INDEX index_books_dateAdded"));
+
+    // MATCH по FTS-таблице: индекс 0 — полный перебор, 1 — поиск по rowid, дальше — полнотекстовый
+    private static final Pattern FTS_MATCH = Pattern.compile("^SCAN \\w+ VIRTUAL TABLE INDEX ([2-9]|\\d{2,}):.*");
+
+    private static final Pattern NAMED_PARAM = Pattern.compile(":\\w+");
+
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        db = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void everyBookDaoQueryUsesAnIndex() throws ReflectiveOperationException {
+        List<String> queries = daoQueries();
+        assertFalse("В BookDao нет ни одной константы QUERY_*", queries.isEmpty());
+
+        SupportSQLiteDatabase sqlite = db.getOpenHelper().getWritableDatabase();
+        List<String> failures = new ArrayList<>();
+        for (String sql : queries) {
+            for (String step : explain(sqlite, sql)) {
+                if (step.startsWith("SCAN ") && !ALLOWED_SCANS.contains(step)
+                        && !FTS_MATCH.matcher(step).matches()) {
+                    failures.add(step + "  <-  " + sql);
+                }
+            }
+        }
+
+        assertTrue("Скан без подходящего индекса:\n" + String.join("\n", failures), failures.isEmpty());
+    }
+
+    private static List<String> explain(SupportSQLiteDatabase sqlite, String sql) {
+        List<String> steps = new ArrayList<>();
+        // Для EXPLAIN параметры можно не привязывать
+        String plain = NAMED_PARAM.matcher(sql).replaceAll("?");
+        try (Cursor c = sqlite.query("EXPLAIN QUERY PLAN " + plain)) {
+            int detail = c.getColumnIndexOrThrow("detail");
+            while (c.moveToNext()) {
+                // SQLite до 3.36 писал "SCAN TABLE books", позже — "SCAN books"
+                steps.add(c.getString(detail).replaceFirst("^(SCAN|SEARCH) TABLE ", "$1 "));
+            }
+        }
+        return steps;
+    }
+
+    private static List<String> daoQueries() throws ReflectiveOperationException {
+        List<String> queries = new ArrayList<>();
+        for (Field field : BookDao.class.getFields()) {
+            if (field.getName().startsWith("QUERY_")) {
+                queries.add((String) field.get(null));
+            }
+        }
+        return queries;
+    }
+}
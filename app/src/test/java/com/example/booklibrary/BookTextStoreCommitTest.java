@@ -0,0 +1,80 @@
+package com.example.booklibrary;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Подмена текста книги: commit() + rollback() (транзакция базы откатилась) оставляют
+ * прежний текст, commit() + close() — новый, и резервных копий не остаётся.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+public class BookTextStoreCommitTest {
+
+    private static final int BOOK_ID = 7;
+
+    private BookTextStore store;
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        Application app = ApplicationProvider.getApplicationContext();
+        store = new BookTextStore(app);
+        dir = new File(app.getFilesDir(), "books");
+        write("Прежний текст.");
+    }
+
+    @Test
+    public void rollbackRestoresPreviousText() throws IOException {
+        try (BookTextStore.Writer writer = store.newWriter()) {
+            writer.writeBlock("Новый текст.");
+            writer.writeBlock("Второй блок.");
+            writer.commit(BOOK_ID);
+            assertEquals("Новый текст.", firstBlock());
+            writer.rollback();
+        }
+
+        assertEquals("Прежний текст.", firstBlock());
+        assertArrayEquals(new String[]{BOOK_ID + ".idx", BOOK_ID + ".txt"}, files());
+    }
+
+    @Test
+    public void closeAfterCommitKeepsNewTextAndDropsBackups() throws IOException {
+        write("Новый текст.");
+
+        assertEquals("Новый текст.", firstBlock());
+        assertArrayEquals(new String[]{BOOK_ID + ".idx", BOOK_ID + ".txt"}, files());
+    }
+
+    private void write(String block) throws IOException {
+        try (BookTextStore.Writer writer = store.newWriter()) {
+            writer.writeBlock(block);
+            writer.commit(BOOK_ID);
+        }
+    }
+
+    private String firstBlock() throws IOException {
+        BookText text = store.open(BOOK_ID);
+        return text.getBlock(0);
+    }
+
+    private String[] files() {
+        String[] names = dir.list();
+        Arrays.sort(names);
+        return names;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.booklibrary;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Архив на сотни книг: записи уходят на вставку по мере разбора, а не после
+ * всего архива, и разобранных, но не вставленных книг не больше лимита очереди.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+@SQLiteMode(SQLiteMode.Mode.NATIVE) // нужен collation UNICODE из сборки SQLite для Android
+public class BulkImportArchiveTest {
+
+    private static final int ENTRIES = 300;
+    private static final Uri ARCHIVE = Uri.parse("content://com.example.booklibrary.test/books.zip");
+
+    // Room не пускает запросы в UI-поток, а тест идёт в нём
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        background.shutdownNow();
+    }
+
+    @Test
+    public void archiveEntriesAreInsertedWhileTheArchiveIsRead() throws Exception {
+        Application app = ApplicationProvider.getApplicationContext();
+        AppDatabase db = AppDatabase.getInstance(app);
+        BookRepository repository = BookRepository.getInstance(app);
+        long before = inBackground(() -> countBooks(db));
+
+        long[] insertedWhenRead = {-1};
+        InputStream archive = new ByteArrayInputStream(zipWithBooks(ENTRIES)) {
+            @Override
+            public void close() throws IOException {
+                // Архив дочитан: всё, что уже в базе, вставлено по ходу разбора
+                if (insertedWhenRead[0] < 0) insertedWhenRead[0] = countBooks(db) - before;
+                super.close();
+            }
+        };
+        shadowOf(app.getContentResolver()).registerInputStream(ARCHIVE, archive);
+
+        CountDownLatch finished = new CountDownLatch(1);
+        BulkImporter.Result[] result = new BulkImporter.Result[1];
+        new BulkImporter(app, repository, false).start(Collections.singletonList(ARCHIVE),
+                new BulkImporter.Listener() {
+                    @Override
+                    public void onProgress(BulkImporter.Progress progress) { }
+
+                    @Override
+                    public void onFinished(BulkImporter.Result r) {
+                        result[0] = r;
+                        finished.countDown();
+                    }
+                });
+
+        // Listener вызывается в UI-потоке — прокручиваем его, пока импорт не закончится
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (finished.getCount() > 0 && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(10);
+        }
+
+        assertNotNull("Импорт не закончился за минуту", result[0]);
+        assertTrue("Ошибки импорта: " + result[0].errors.size(), result[0].errors.isEmpty());
+        assertEquals(ENTRIES, result[0].imported);
+        assertEquals(ENTRIES, inBackground(() -> countBooks(db)) - before);
+        // Не вставлены к концу чтения только очередь и неполная пачка
+        long pendingLimit = BulkImporter.MAX_READY + BulkImporter.INSERT_BATCH;
+        assertTrue("К концу архива вставлено " + insertedWhenRead[0] + " из " + ENTRIES,
+                insertedWhenRead[0] >= ENTRIES - pendingLimit);
+    }
+
+    private static long countBooks(AppDatabase db) {
+        try (Cursor c = db.getOpenHelper().getReadableDatabase().query("SELECT COUNT(*) FROM books")) {
+            c.moveToFirst();
+            return c.getLong(0);
+        }
+    }
+
+    private static byte[] zipWithBooks(int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < count; i++) {
+                zip.putNextEntry(new ZipEntry("book" + i + ".fb2"));
+                // у каждой книги свой текст, иначе импорт сочтёт их дубликатами
+                zip.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<FictionBook><description><title-info>"
+                        + "<genre>prose</genre>"
+                        + "<author><first-name>Иван</first-name><last-name>Тестов</last-name></author>"
+                        + "<book-title>Книга из архива " + i + "</book-title>"
+                        + "</title-info></description>\n<body><section>"
+                        + "<p>Первый абзац книги " + i + ".</p><p>Второй абзац.</p>"
+                        + "</section></body></FictionBook>\n").getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private <T> T inBackground(Callable<T> task) throws Exception {
+        return background.submit(task).get();
+    }
+}
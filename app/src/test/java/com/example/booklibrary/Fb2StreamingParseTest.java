@@ -0,0 +1,169 @@
+package com.example.booklibrary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.kxml2.io.KXmlParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Разбирает FB2 на ~100 МБ в отдельной JVM с кучей 32 МБ: если парсер снова начнёт
+ * копить текст книги в памяти, дочерний процесс упадёт с OutOfMemoryError.
+ * Книга генерируется прямо во вход дочернего процесса, на диск не пишется.
+ * Тяжёлый: в обычный прогон не входит (SlowTest).
+ */
+@Category(SlowTest.class)
+public class Fb2StreamingParseTest {
+
+    private static final int SECTIONS = 2_000;
+    private static final int PARAGRAPHS_PER_SECTION = 60; // ~0.9 КБ на абзац — книга около 107 МБ
+    private static final int EXPECTED_PARAGRAPHS = SECTIONS * PARAGRAPHS_PER_SECTION;
+    private static final String HEAP = "-Xmx32m";
+    private static final long TIMEOUT_MINUTES = 5;
+
+    private File counts;
+
+    @Before
+    public void setUp() throws IOException {
+        counts = File.createTempFile("huge", ".counts");
+    }
+
+    @After
+    public void tearDown() {
+        counts.delete();
+    }
+
+    @Test
+    public void hugeBookParsesInSmallHeap() throws Exception {
+        String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+        List<String> command = Arrays.asList(java, HEAP,
+                "-cp", System.getProperty("java.class.path"),
+                Fb2StreamingParseTest.class.getName(), counts.getPath());
+        Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        // Вход и вывод дочерней JVM — в своих потоках, чтобы таймаут ниже работал
+        long[] written = {0};
+        Thread feeder = new Thread(() -> {
+            try (OutputStream in = child.getOutputStream()) {
+                written[0] = writeHugeFb2(in);
+            } catch (IOException e) {
+                // дочерний процесс упал и закрыл вход — причина будет в его выводе
+            }
+        });
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Thread reader = new Thread(() -> {
+            try (InputStream out = child.getInputStream()) {
+                out.transferTo(output);
+            } catch (IOException ignored) {
+                // процесс убит по таймауту
+            }
+        });
+        feeder.start();
+        reader.start();
+
+        boolean exited = child.waitFor(TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        if (!exited) {
+            child.destroyForcibly();
+            child.waitFor();
+        }
+        feeder.join();
+        reader.join();
+        String log = output.toString(StandardCharsets.UTF_8.name()).trim();
+
+        assertTrue("Разбор не уложился в " + TIMEOUT_MINUTES + " минут", exited);
+        assertEquals(log, 0, child.exitValue());
+        assertTrue("Книга меньше 100 МБ: " + written[0], written[0] >= 100L * 1024 * 1024);
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(counts))) {
+            int paragraphCount = in.readInt();
+            long sinkParagraphs = in.readLong();
+            long sinkChars = in.readLong();
+            assertEquals(EXPECTED_PARAGRAPHS, paragraphCount);
+            assertEquals(EXPECTED_PARAGRAPHS, sinkParagraphs);
+            assertTrue("До sink не дошло ни одного символа", sinkChars > 0);
+        }
+    }
+
+    // Точка входа дочерней JVM: книга — из System.in, в файл args[0] пишутся
+    // paragraphCount парсера, число абзацев и символов, дошедших до sink
+    public static void main(String[] args) throws Exception {
+        long[] seen = new long[1];
+        long[] chars = new long[1];
+        ParsedBook book;
+        try (InputStream in = new BufferedInputStream(System.in, 64 * 1024)) {
+            book = Fb2Parser.parse(new KXmlParser(), in, paragraph -> {
+                seen[0]++;
+                chars[0] += paragraph.length();
+            }, null);
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(args[0]))) {
+            out.writeInt(book.paragraphCount);
+            out.writeLong(seen[0]);
+            out.writeLong(chars[0]);
+        }
+    }
+
+    // Возвращает число записанных байтов
+    private static long writeHugeFb2(OutputStream target) throws IOException {
+        StringBuilder line = new StringBuilder("<p>");
+        for (int i = 0; line.length() < 500; i++) {
+            line.append("Длинная строка текста книги номер ").append(i).append(". ");
+        }
+        String paragraph = line.append("</p>\n").toString();
+
+        long[] bytes = {0};
+        OutputStream counting = new FilterOutputStream(target) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytes[0]++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytes[0] += len;
+            }
+        };
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(counting, StandardCharsets.UTF_8), 64 * 1024)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<FictionBook><description><title-info>"
+                    + "<genre>prose</genre>"
+                    + "<author><first-name>Иван</first-name><last-name>Тестов</last-name></author>"
+                    + "<book-title>Очень большая книга</book-title>"
+                    + "<date>2024</date>"
+                    + "</title-info></description>\n<body>\n");
+            for (int s = 0; s < SECTIONS; s++) {
+                out.write("<section>\n");
+                for (int p = 0; p < PARAGRAPHS_PER_SECTION; p++) {
+                    out.write(paragraph);
+                }
+                out.write("</section>\n");
+            }
+            out.write("</body></FictionBook>\n");
+        }
+        return bytes[0];
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.booklibrary;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Книга из импорта «только каталог»: текста нет, есть sourceUri. Читалка для неё
+ * доступна, и первое открытие разбирает исходный FB2 и сохраняет текст книги.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 35)
+@SQLiteMode(SQLiteMode.Mode.NATIVE) // нужен collation UNICODE из сборки SQLite для Android
+public class LazyTextLoadTest {
+
+    // Room не пускает запросы в UI-поток, а тест идёт в нём
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+    private File fb2;
+
+    @Before
+    public void setUp() throws IOException {
+        fb2 = File.createTempFile("catalog", ".fb2");
+        try (OutputStream out = new FileOutputStream(fb2)) {
+            out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<FictionBook><description><title-info>"
+                    + "<genre>prose</genre>"
+                    + "<author><first-name>Иван</first-name><last-name>Тестов</last-name></author>"
+                    + "<book-title>Книга из каталога</book-title>"
+                    + "</title-info></description>\n<body><section>"
+                    + "<p>Первый абзац.</p><p>Второй абзац.</p><p>Третий абзац.</p>"
+                    + "</section></body></FictionBook>\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        background.shutdownNow();
+        fb2.delete();
+    }
+
+    @Test
+    public void metadataOnlyBookLoadsTextFromSourceOnFirstOpen() throws Exception {
+        Application app = ApplicationProvider.getApplicationContext();
+        AppDatabase db = AppDatabase.getInstance(app);
+        BookRepository repository = BookRepository.getInstance(app);
+
+        Book book = new Book("Книга из каталога", "Иван Тестов", "prose", 0);
+        book.setSourceUri(Uri.fromFile(fb2).toString());
+        assertFalse(book.hasText());
+        assertTrue("Кнопка «Читать» должна быть видна", book.canOpenInReader());
+
+        int id = (int) (long) inBackground(() -> db.bookDao().insert(book));
+        book.setId(id);
+
+        BookText text = inBackground(() -> repository.loadTextFromSource(book));
+        assertNotNull(text);
+        assertEquals(3, text.getBlockCount());
+        assertEquals("Первый абзац.", text.getBlock(0));
+
+        SupportSQLiteDatabase sqlite = db.getOpenHelper().getWritableDatabase();
+        try (Cursor c = inBackground(() -> sqlite.query(
+                "SELECT blockCount, textVersion FROM books WHERE id = ?", new Object[]{id}))) {
+            assertTrue(c.moveToFirst());
+            assertEquals(3, c.getInt(0));
+            assertTrue("textVersion не выставлена", c.getLong(1) > 0);
+        }
+    }
+
+    @Test
+    public void secondCatalogueCopyOfSameTextIsReportedAsDuplicate() throws Exception {
+        Application app = ApplicationProvider.getApplicationContext();
+        AppDatabase db = AppDatabase.getInstance(app);
+        BookRepository repository = BookRepository.getInstance(app);
+
+        // Импорт «только каталог» хэша не знает: обе копии попали в библиотеку
+        Book first = new Book("Книга из каталога", "Иван Тестов", "prose", 0);
+        Book second = new Book("Книга из каталога", "Иван Тестов", "prose", 0);
+        first.setSourceUri(Uri.fromFile(fb2).toString());
+        second.setSourceUri(Uri.fromFile(fb2).toString());
+        first.setId((int) (long) inBackground(() -> db.bookDao().insert(first)));
+        second.setId((int) (long) inBackground(() -> db.bookDao().insert(second)));
+
+        assertNotNull(inBackground(() -> repository.loadTextFromSource(first)));
+        try {
+            inBackground(() -> repository.loadTextFromSource(second));
+            fail("Ожидали DuplicateBookException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DuplicateBookException);
+            assertEquals(first.getId(), ((DuplicateBookException) e.getCause()).duplicateOf);
+        }
+        assertNull("Текст дубликата не должен сохраниться",
+                inBackground(() -> repository.openText(second.getId(), 0)));
+    }
+
+    @Test
+    public void missingSourceFileIsReportedWithReadableMessage() throws Exception {
+        Application app = ApplicationProvider.getApplicationContext();
+        AppDatabase db = AppDatabase.getInstance(app);
+        BookRepository repository = BookRepository.getInstance(app);
+
+        Book book = new Book("Потерянная книга", "Иван Тестов", "prose", 0);
+        book.setSourceUri(Uri.fromFile(new File(fb2.getParentFile(), "moved-away.fb2")).toString());
+        int id = (int) (long) inBackground(() -> db.bookDao().insert(book));
+        book.setId(id);
+
+        try {
+            inBackground(() -> repository.loadTextFromSource(book));
+            fail("Ожидали IOException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("не найден"));
+        }
+    }
+
+    private <T> T inBackground(Callable<T> task) throws Exception {
+        return background.submit(task).get();
+    }
+}
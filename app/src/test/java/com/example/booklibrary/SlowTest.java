@@ -0,0 +1,8 @@
+package com.example.booklibrary;
+
+/**
+ * Категория JUnit для тяжёлых тестов и замеров производительности: в обычный
+ * ./gradlew test не входят, запускаются с -PslowTests.
+ */
+public interface SlowTest {
+}
@@ -0,0 +1,41 @@
+package com.example.booklibrary;
+
+import java.util.Random;
+
+/**
+ * Синтетический русский текст для тестов и замеров: по одному seed Random
+ * получается один и тот же текст.
+ */
+final class TestTexts {
+
+    private static final String[] WORDS = {
+            "и", "в", "не", "он", "на", "что", "как", "она", "было", "сказал",
+            "только", "когда", "глаза", "рука", "дом", "время", "человек", "дорога",
+            "тишина", "вечер", "окно", "ветер", "снова", "потом", "ничего", "говорил",
+            "медленно", "посмотрел", "улыбнулась", "князь", "письмо", "сердце"
+    };
+
+    private TestTexts() { }
+
+    // От 20 до 99 слов, изредка через запятую, с точкой в конце
+    static String paragraph(Random random) {
+        int words = 20 + random.nextInt(80);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(random.nextInt(12) == 0 ? ", " : " ");
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.append('.').toString();
+    }
+
+    // Абзацы через "\n\n" или "\r\n\r\n", иногда с пробелами в начале следующего
+    static String book(Random random, int paragraphs) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < paragraphs; p++) {
+            sb.append(paragraph(random));
+            sb.append(random.nextInt(4) == 0 ? "\r\n\r\n" : "\n\n");
+            if (random.nextInt(10) == 0) sb.append("  ");
+        }
+        return sb.toString();
+    }
+}